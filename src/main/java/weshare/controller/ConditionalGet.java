@@ -0,0 +1,84 @@
+package weshare.controller;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import io.javalin.http.Context;
+import io.javalin.http.HttpCode;
+import weshare.model.Person;
+import weshare.persistence.versions.DataVersions;
+import weshare.server.EntityTags;
+import weshare.server.ServiceRegistry;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Lets a page answer a reload with 304 Not Modified when nothing it shows has changed, before it reads any data or
+ * renders a template.
+ * <p>
+ * The {@code ETag} is the {@link DataVersions.Version} of the data on the page, together with who is looking at it,
+ * since the page also shows who is logged in. {@code Last-Modified} is only sent once the second it names is over:
+ * HTTP dates have no finer resolution, so a later change in the same second could not be told apart from it.
+ */
+final class ConditionalGet {
+    private static final long SECOND = 1000;
+    private static final int VIEWER_TAG_BYTES = 16;
+
+    private ConditionalGet() {
+    }
+
+    static DataVersions versions() {
+        return ServiceRegistry.lookup(DataVersions.class);
+    }
+
+    /**
+     * Sets the validators for the page and, if the browser already has this version, answers 304.
+     *
+     * @return true if the response is complete and the handler should stop
+     */
+    static boolean notModified(Context context, Person viewer, DataVersions.Version version) {
+        String etag = "\"" + version.tag() + "-" + viewerTag(viewer) + "\"";
+        context.header("ETag", etag);
+        context.header("Cache-Control", "private, no-cache");
+
+        long lastModified = version.getModifiedAt() - version.getModifiedAt() % SECOND;
+        boolean secondIsOver = System.currentTimeMillis() - lastModified >= SECOND;
+        if (secondIsOver) context.header("Last-Modified", httpDate(lastModified));
+
+        String ifNoneMatch = context.header("If-None-Match");
+        String ifModifiedSince = context.header("If-Modified-Since");
+        boolean unchanged;
+        if (ifNoneMatch != null) {
+            unchanged = EntityTags.matches(ifNoneMatch, etag);
+        } else {
+            unchanged = secondIsOver && ifModifiedSince != null && parseHttpDate(ifModifiedSince) >= lastModified;
+        }
+        if (unchanged) context.status(HttpCode.NOT_MODIFIED);
+        return unchanged;
+    }
+
+    /**
+     * Who is looking, as the first 128 bits of a SHA-256 of their email address. A short hash could collide, and then a
+     * browser shared by two people could be told that the other person's page is still current.
+     */
+    static String viewerTag(Person viewer) {
+        byte[] digest = Hashing.sha256().hashString(Person.normalise(viewer.getEmail()), StandardCharsets.UTF_8).asBytes();
+        return BaseEncoding.base16().lowerCase().encode(digest, 0, VIEWER_TAG_BYTES);
+    }
+
+    private static String httpDate(long epochMillis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(epochMillis).atZone(ZoneOffset.UTC));
+    }
+
+    private static long parseHttpDate(String value) {
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+}
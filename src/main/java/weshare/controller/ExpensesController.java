@@ -1,16 +1,24 @@
 package weshare.controller;
 
+import io.javalin.http.Context;
 import io.javalin.http.Handler;
-import org.javamoney.moneta.Money;
-import org.javamoney.moneta.function.MonetaryFunctions;
 import weshare.model.Expense;
-import weshare.model.MoneyHelper;
+import weshare.model.Payment;
 import weshare.model.PaymentRequest;
 import weshare.model.Person;
+import weshare.model.ZarCents;
+import weshare.persistence.Cursor;
 import weshare.persistence.ExpenseDAO;
+import weshare.persistence.Page;
 import weshare.persistence.PersonDAO;
+import weshare.persistence.summary.ExpenseSummaries;
+import weshare.persistence.summary.PersonSummary;
+import weshare.persistence.versions.DataVersions;
+import weshare.server.Routes;
 import weshare.server.ServiceRegistry;
 import weshare.server.WeShareServer;
+import weshare.server.events.PaymentEvent;
+import weshare.server.timing.RequestTimer;
 
 import javax.money.Monetary;
 import javax.money.MonetaryAmount;
@@ -18,39 +26,39 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
 public class ExpensesController {
+    /**
+     * How many rows the expense and payment request lists show at a time.
+     */
+    public static final int PAGE_SIZE = 20;
 
     public static final Handler view = context -> {
-        ExpenseDAO expensesDAO = ServiceRegistry.lookup(ExpenseDAO.class);
         Person personLoggedIn = WeShareServer.getPersonLoggedIn(context);
-
-        Collection<Expense> expenses = (expensesDAO.findExpensesForPerson(personLoggedIn)).stream()
-                .filter(expense -> !expense.isFullyPaidByOthers())
-                .collect(Collectors.toList());
-
-        MonetaryAmount totalAmount = expenses.stream()
-                .map(Expense::getAmount) // Get the MonetaryAmount
-                .reduce(MonetaryFunctions.sum()) // Sum the amounts
-                .orElse(Money.zero(MoneyHelper.ZERO_RANDS.getCurrency()));
-
-
-        // Pass expenses and totalAmount to the view
-        boolean hasUnpaidExpenses = expenses.stream()
-                .flatMap(expense -> expense.listOfPaymentRequests().stream())
-                .anyMatch(request -> !request.isPaid());
-
-        // Pass expenses, totalAmount, and hasUnpaidExpenses to the view
-        Map<String, Object> viewModel = Map.of(
-                "expenses", expenses,
-                "totalAmount", totalAmount,
-                "hasUnpaidExpenses", hasUnpaidExpenses // Add the boolean to the view model
-        );
-
-        context.render("expenses.html", viewModel);
-
-        System.out.println(personLoggedIn);
+        DataVersions.Version version = ConditionalGet.versions().forPerson(personLoggedIn);
+        if (ConditionalGet.notModified(context, personLoggedIn, version)) return;
+
+        pages().render(context, "expenses.html", personLoggedIn, version, () -> {
+            ExpenseDAO expensesDAO = ServiceRegistry.lookup(ExpenseDAO.class);
+
+            // settled expenses are skipped before the page is cut, so every page but the last is full
+            Page<Expense> page = expensesDAO.findOpenExpensesForPerson(personLoggedIn, cursor(context), PAGE_SIZE);
+
+            // the totals cover every open expense, not only the ones on this page, and are kept up to date on each save
+            PersonSummary summary = ServiceRegistry.lookup(ExpenseSummaries.class).summaryFor(personLoggedIn);
+            MonetaryAmount totalAmount = ZarCents.toAmount(summary.getOpenCents());
+            boolean hasUnpaidExpenses = summary.hasUnpaidRequests();
+
+            // Pass expenses, totalAmount, and hasUnpaidExpenses to the view
+            return Map.of(
+                    "expenses", page.getItems(),
+                    "totalAmount", totalAmount,
+                    "hasUnpaidExpenses", hasUnpaidExpenses, // Add the boolean to the view model
+                    "page", page,
+                    "pageNumber", pageNumber(context)
+            );
+        });
     };
 
 
@@ -89,39 +97,30 @@ public class ExpensesController {
         ExpenseDAO expensesDAO = ServiceRegistry.lookup(ExpenseDAO.class);
         expensesDAO.save(newExpense);
 
-        Collection<Expense> expenses = expensesDAO.findExpensesForPerson(personLoggedIn);
-        MonetaryAmount totalAmount = expenses.stream()
-                .map(Expense::getAmount) // Get the MonetaryAmount
-                .reduce(MonetaryFunctions.sum()) // Sum the amounts
-                .orElse(Money.zero(MoneyHelper.ZERO_RANDS.getCurrency()));
-
-        // Pass expenses and totalAmount to the view
-        Map<String, Object> viewModel = Map.of(
-                "expenses", expenses,
-                "totalAmount", totalAmount
-        );
-
-        // Redirect back to the expenses page or render a success message
-        context.render("/expenses.html", viewModel); // Redirect to the expenses list page
+        // Redirect back to the expenses list, which starts again at its first page
+        context.redirect(Routes.EXPENSES);
     };
 
     public static final Handler payment_request = context -> {
         String expenseId = context.queryParam("expenseId");
+        UUID id = UUID.fromString(expenseId);
+        Person personLoggedIn = WeShareServer.getPersonLoggedIn(context);
+        DataVersions.Version version = ConditionalGet.versions().forExpense(id);
+        if (ConditionalGet.notModified(context, personLoggedIn, version)) return;
 
-        ExpenseDAO expensesDAO = ServiceRegistry.lookup(ExpenseDAO.class);
-        Optional<Expense> expenseOptional = expensesDAO.get(UUID.fromString(expenseId));// Assuming you have this method
-
-        Expense expense = expenseOptional.get();
-        Collection<PaymentRequest> payment_requests = expense.listOfPaymentRequests();
+        pages().render(context, "paymentrequest.html", personLoggedIn, version, () -> {
+            ExpenseDAO expensesDAO = ServiceRegistry.lookup(ExpenseDAO.class);
+            Optional<Expense> expenseOptional = expensesDAO.get(id);// Assuming you have this method
 
-        Map<String, Object> viewModel = Map.of(
-                "expense", expense,
-                "requests", payment_requests
+            Expense expense = expenseOptional.get();
+            Collection<PaymentRequest> payment_requests = expense.listOfPaymentRequests();
 
-        );
-        System.out.println(payment_requests);
+            return Map.of(
+                    "expense", expense,
+                    "requests", payment_requests
 
-        context.render("paymentrequest.html", viewModel);
+            );
+        });
     };
 
     // Helper method to parse the amount from String to MonetaryAmount
@@ -137,43 +136,85 @@ public class ExpensesController {
         }
     }
 
-    public static final Handler payment_received = context -> {
-        ExpenseDAO expensesDAO = ServiceRegistry.lookup(ExpenseDAO.class);
-        Person personLoggedIn = WeShareServer.getPersonLoggedIn(context);
+    /**
+     * Rendered pages are only kept when the cache is given a size, otherwise each page is rendered afresh.
+     */
+    private static PageCache pages() {
+        return ServiceRegistry.lookup(PageCache.class);
+    }
 
-        Collection<PaymentRequest> payment_received = expensesDAO.findPaymentRequestsReceived(personLoggedIn);
+    /**
+     * Charges working out a total to the {@code aggregate} phase of the request, including reading the DAO streams.
+     */
+    private static <T> T aggregated(Supplier<T> total) {
+        try (RequestTimer.Split ignored = RequestTimer.phase("aggregate")) {
+            return total.get();
+        }
+    }
 
-        MonetaryAmount totalAmount = payment_received.stream()
-                .map(PaymentRequest::getAmountToPay)
-                .reduce(MonetaryAmount::add) // Sum up the amounts
-                .orElse(Monetary.getDefaultAmountFactory().setCurrency("ZAR").setNumber(0).create());
+    /**
+     * Where the requested page starts, from the {@code cursor} query parameter. Without one the list starts at the top.
+     */
+    private static Cursor cursor(Context context) {
+        return Cursor.parse(context.queryParam("cursor"));
+    }
 
-        Map<String, Object> viewModel = Map.of(
-                "payments", payment_received,
-                "totalAmount", totalAmount
-        );
+    /**
+     * The {@code page} query parameter only numbers the pages for display, the cursor decides what is on them.
+     */
+    private static int pageNumber(Context context) {
+        return context.queryParamAsClass("page", Integer.class)
+                .check(number -> number >= 1, "Page numbers start at 1")
+                .getOrDefault(1);
+    }
 
-        context.render("/paymentrequests_received.html", viewModel);
+    public static final Handler payment_received = context -> {
+        Person personLoggedIn = WeShareServer.getPersonLoggedIn(context);
+        DataVersions.Version version = ConditionalGet.versions().forPerson(personLoggedIn);
+        if (ConditionalGet.notModified(context, personLoggedIn, version)) return;
+
+        pages().render(context, "/paymentrequests_received.html", personLoggedIn, version, () -> {
+            ExpenseDAO expensesDAO = ServiceRegistry.lookup(ExpenseDAO.class);
+
+            Page<PaymentRequest> page = expensesDAO.findPaymentRequestsReceived(personLoggedIn, cursor(context), PAGE_SIZE);
+
+            // the total covers every payment request, not only the ones on this page
+            MonetaryAmount totalAmount = aggregated(() -> ZarCents.toAmount(expensesDAO.streamPaymentRequestsReceived(personLoggedIn)
+                    .mapToLong(PaymentRequest::getAmountInCents)
+                    .reduce(0, ZarCents::add))); // Sum up the amounts in cents
+
+            return Map.of(
+                    "payments", page.getItems(),
+                    "totalAmount", totalAmount,
+                    "page", page,
+                    "pageNumber", pageNumber(context)
+            );
+        });
     };
 
 
     public static final Handler payment_sent = context -> {
-        ExpenseDAO expensesDAO = ServiceRegistry.lookup(ExpenseDAO.class);
         Person personLoggedIn = WeShareServer.getPersonLoggedIn(context);
-
-        Collection<PaymentRequest> payment_sent = expensesDAO.findPaymentRequestsSent(personLoggedIn);
-
-        MonetaryAmount totalAmount = payment_sent.stream()
-                .map(PaymentRequest::getAmountToPay)
-                .reduce(MonetaryAmount::add) // Sum up the amounts
-                .orElse(Monetary.getDefaultAmountFactory().setCurrency("ZAR").setNumber(0).create());
-
-        Map<String, Object> viewModel = Map.of(
-                "payments", payment_sent,
-                "totalAmount", totalAmount
-        );
-
-        context.render("/paymentrequests_sent.html", viewModel);
+        DataVersions.Version version = ConditionalGet.versions().forPerson(personLoggedIn);
+        if (ConditionalGet.notModified(context, personLoggedIn, version)) return;
+
+        pages().render(context, "/paymentrequests_sent.html", personLoggedIn, version, () -> {
+            ExpenseDAO expensesDAO = ServiceRegistry.lookup(ExpenseDAO.class);
+
+            Page<PaymentRequest> page = expensesDAO.findPaymentRequestsSent(personLoggedIn, cursor(context), PAGE_SIZE);
+
+            // the total covers every payment request, not only the ones on this page
+            MonetaryAmount totalAmount = aggregated(() -> ZarCents.toAmount(expensesDAO.streamPaymentRequestsSent(personLoggedIn)
+                    .mapToLong(PaymentRequest::getAmountInCents)
+                    .reduce(0, ZarCents::add))); // Sum up the amounts in cents
+
+            return Map.of(
+                    "payments", page.getItems(),
+                    "totalAmount", totalAmount,
+                    "page", page,
+                    "pageNumber", pageNumber(context)
+            );
+        });
     };
 
     public static Handler send_payment = context -> {
@@ -184,21 +225,21 @@ public class ExpensesController {
         UUID paymentId = UUID.fromString(context.formParam("paymentId"));
         Person personLoggedIn = WeShareServer.getPersonLoggedIn(context);
 
-        Collection<PaymentRequest> payment_received = expensesDAO.findPaymentRequestsReceived(personLoggedIn);
-        PaymentRequest matchingRequest = null;
-        for (PaymentRequest paymentRequest : payment_received) {
-            if (paymentRequest.getId().equals(paymentId)) {
-                matchingRequest = paymentRequest;
-                break; // Exit loop once the match is found
-            }
+        PaymentRequest matchingRequest = expensesDAO.getPaymentRequest(paymentId)
+                .filter(paymentRequest -> paymentRequest.getPersonWhoShouldPayBack().equals(personLoggedIn))
+                .orElseThrow(() -> new RuntimeException("Payment request not found"));
+
+        // when the same request is paid twice at once only one payment wins, the other simply goes back to the list
+        PaymentEvent paymentEvent = new PaymentEvent();
+        paymentEvent.begin();
+        Optional<Payment> payment = matchingRequest.tryPay(personLoggedIn, LocalDate.now());
+        paymentEvent.attempted(matchingRequest, personLoggedIn, payment);
+        if (payment.isEmpty()) {
+            context.redirect("/paymentrequests_received");
+            return;
         }
-
-        Expense expense = matchingRequest.getExpense();
-        matchingRequest.pay(personLoggedIn, LocalDate.now());
-
-        String description = expense.getDescription();
-        Expense newExpense = new Expense(personLoggedIn, description, matchingRequest.getAmountToPay(), LocalDate.now());
-        expensesDAO.save(newExpense);
+        expensesDAO.save(matchingRequest.getExpense());
+        expensesDAO.save(payment.get().getExpenseForPersonPaying());
 
         // Calculate the total payment request
 //        long totalPaymentRequest = expense.getAmount().getNumber().intValueExact() -
@@ -259,5 +300,4 @@ public class ExpensesController {
         context.redirect("/paymentrequest?expenseId=" + expenseId);
     };
 
-
 }
@@ -0,0 +1,15 @@
+package weshare.controller;
+
+import io.javalin.http.Handler;
+import weshare.server.ServiceRegistry;
+import weshare.server.metrics.Metrics;
+
+public class MetricsController {
+    /**
+     * Everything the server has counted, for Prometheus to scrape.
+     */
+    public static final Handler metrics = context -> {
+        context.contentType(Metrics.CONTENT_TYPE);
+        context.result(ServiceRegistry.lookup(Metrics.class).export());
+    };
+}
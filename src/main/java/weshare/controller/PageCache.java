@@ -0,0 +1,112 @@
+package weshare.controller;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.javalin.http.Context;
+import io.javalin.plugin.rendering.JavalinRenderer;
+import weshare.model.Person;
+import weshare.persistence.versions.DataVersions;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Keeps rendered pages, so that showing a page again to the same person for the same data neither reads the DAO nor
+ * runs the template engine.
+ * <p>
+ * A page is keyed by its template, who is looking at it, the query string and the {@link DataVersions.Version} of the
+ * data on it. Saving an expense moves that version on, so a page rendered before the save is never found again; it
+ * stays until the least recently used pages make way for new ones, once the cache holds more than its limit in bytes.
+ */
+public class PageCache {
+    private static final String HTML = "text/html; charset=utf-8";
+
+    private final Cache<Key, byte[]> pages;
+
+    /**
+     * @param maxBytes how much rendered HTML to keep, or 0 to render every page afresh
+     */
+    public PageCache(long maxBytes) {
+        if (maxBytes < 0) throw new IllegalArgumentException("The cache size cannot be negative, not " + maxBytes);
+        this.pages = maxBytes == 0 ? null : CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, byte[] html) -> html.length)
+                .build();
+    }
+
+    /**
+     * Sends the page, rendering it with the model only if it is not in the cache already.
+     */
+    public void render(Context context, String template, Person viewer, DataVersions.Version version,
+                       Supplier<Map<String, Object>> model) {
+        byte[] html = page(template, viewer, version, context.queryString(),
+                () -> JavalinRenderer.INSTANCE.renderBasedOnExtension(template, model.get(), context));
+        context.contentType(HTML);
+        context.result(html);
+    }
+
+    /**
+     * The rendered page, from the cache or from {@code render}. People asking for the same page at the same time wait
+     * for it to be rendered once.
+     */
+    byte[] page(String template, Person viewer, DataVersions.Version version, String query, Supplier<String> render) {
+        if (pages == null) return render.get().getBytes(StandardCharsets.UTF_8);
+        Key key = new Key(template, viewer, version.tag(), query);
+        try {
+            return pages.get(key, () -> render.get().getBytes(StandardCharsets.UTF_8));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException("Could not render " + template, e.getCause());
+        }
+    }
+
+    long size() {
+        return pages == null ? 0 : pages.size();
+    }
+
+    private static final class Key {
+        private final String template;
+        private final Person viewer;
+        private final String version;
+        private final String query;
+
+        private Key(String template, Person viewer, String version, String query) {
+            this.template = template;
+            this.viewer = viewer;
+            this.version = version;
+            this.query = query;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return template.equals(other.template)
+                    && viewer.equals(other.viewer)
+                    && version.equals(other.version)
+                    && Objects.equals(query, other.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(template, viewer, version, query);
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("template", template)
+                    .add("viewer", viewer)
+                    .add("version", version)
+                    .add("query", query)
+                    .toString();
+        }
+    }
+}
@@ -3,16 +3,16 @@ package weshare.controller;
 import io.javalin.http.Handler;
 import weshare.model.Person;
 import weshare.persistence.PersonDAO;
+import weshare.server.LoginSessions;
 import weshare.server.Routes;
 import weshare.server.ServiceRegistry;
-import weshare.server.WeShareServer;
 
 import java.util.Objects;
 
 public class PersonController {
 
     public static final Handler logout = ctx -> {
-        ctx.sessionAttribute(WeShareServer.SESSION_USER_KEY, null);
+        ServiceRegistry.lookup(LoginSessions.class).logOut(ctx);
         ctx.redirect(Routes.LOGIN_PAGE);
     };
 
@@ -22,8 +22,8 @@ public class PersonController {
                 .check(Objects::nonNull, "Email is required")
                 .get();
 
-        Person person = personDAO.savePerson(new Person(email));
-        context.sessionAttribute(WeShareServer.SESSION_USER_KEY, person);
+        Person person = personDAO.savePerson(Person.of(email));
+        ServiceRegistry.lookup(LoginSessions.class).logIn(context, person);
         context.redirect(Routes.EXPENSES);
     };
 }
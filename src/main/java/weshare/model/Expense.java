@@ -8,83 +8,139 @@ package weshare.model;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
 import com.google.common.base.Strings;
-import org.javamoney.moneta.Money;
-import org.javamoney.moneta.function.MonetaryFunctions;
 
 import javax.money.MonetaryAmount;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
-import java.util.stream.Collectors;
-
-import static weshare.model.MoneyHelper.ZERO_RANDS;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Expense {
+    private static final Comparator<PaymentRequest> BY_DUE_DATE = Comparator.comparing(PaymentRequest::getDueDate)
+            .thenComparing(PaymentRequest::getId);
+
     private final Person person;
     private final String description;
     private final MonetaryAmount amount;
+    private final long amountInCents;
     private final LocalDate date;
     private final UUID id;
-    private final HashMap<UUID, PaymentRequest> paymentRequests;
+    private final Map<UUID, PaymentRequest> paymentRequests;
+    private volatile List<PaymentRequest> paymentRequestsByDueDate = List.of();
+    private volatile long centsRequested;
+    private final AtomicLong centsReceived = new AtomicLong();
 
     public Expense(Person person, String description, MonetaryAmount amount, LocalDate date) {
+        this(Ids.next(), person, description, amount, date);
+    }
+
+    /**
+     * Recreates an expense that already has an id, e.g. when it is read back from storage.
+     */
+    public Expense(UUID id, Person person, String description, MonetaryAmount amount, LocalDate date) {
         checkDate(date);
         this.person = person;
         this.description = Strings.isNullOrEmpty(description) ? "Unspecified" : description;
         this.amount = amount;
+        this.amountInCents = ZarCents.of(amount);
         this.date = date;
-        this.id = UUID.randomUUID();
-        this.paymentRequests = new HashMap<>();
+        this.id = id;
+        this.paymentRequests = new ConcurrentHashMap<>();
     }
 
     public PaymentRequest requestPayment(Person personWhoShouldPayBack, MonetaryAmount amountToPay, LocalDate dueDate) {
-        PaymentRequest paymentRequest = new PaymentRequest(this, personWhoShouldPayBack, amountToPay, dueDate);
+        return requestPayment(Ids.next(), personWhoShouldPayBack, amountToPay, dueDate);
+    }
+
+    /**
+     * Recreates a payment request that already has an id, e.g. when it is read back from storage.
+     * <p>
+     * Synchronized so that two concurrent requests cannot both pass the check against the amount still available.
+     */
+    public synchronized PaymentRequest requestPayment(UUID id, Person personWhoShouldPayBack, MonetaryAmount amountToPay, LocalDate dueDate) {
+        PaymentRequest paymentRequest = new PaymentRequest(id, this, personWhoShouldPayBack, amountToPay, dueDate);
         paymentRequests.put(paymentRequest.getId(), paymentRequest);
+        paymentRequestsByDueDate = inserted(paymentRequestsByDueDate, paymentRequest);
+        centsRequested = ZarCents.add(centsRequested, paymentRequest.getAmountInCents());
         return paymentRequest;
     }
 
+    /**
+     * Adds a payment to the total received. Only called by a payment request that has just won the race to be paid,
+     * see {@link PaymentRequest#tryPay(Person, LocalDate)}, so every request is counted once without taking a lock.
+     */
+    void paymentReceived(PaymentRequest paymentRequest) {
+        centsReceived.accumulateAndGet(paymentRequest.getAmountInCents(), ZarCents::add);
+    }
+
+    /**
+     * Copy-on-write: requests are added far less often than they are listed, so adding one builds a new sorted list
+     * and reading just hands out the current one.
+     */
+    private static List<PaymentRequest> inserted(List<PaymentRequest> sorted, PaymentRequest paymentRequest) {
+        int index = Collections.binarySearch(sorted, paymentRequest, BY_DUE_DATE);
+        List<PaymentRequest> updated = new ArrayList<>(sorted.size() + 1);
+        updated.addAll(sorted);
+        if (index >= 0) updated.set(index, paymentRequest);
+        else updated.add(-index - 1, paymentRequest);
+        return Collections.unmodifiableList(updated);
+    }
+
+    /**
+     * The payment requests, soonest due first. The list is immutable and is not copied or sorted on each call.
+     */
     public Collection<PaymentRequest> listOfPaymentRequests() {
-        return paymentRequests.values().stream()
-                .sorted(Comparator.comparing(PaymentRequest::daysLeftToPay))
-                .collect(Collectors.toUnmodifiableList());
+        return paymentRequestsByDueDate;
     }
 
+    /**
+     * Kept as a running total, updated as payments are requested, so this does not add up the payment requests.
+     */
     public MonetaryAmount totalAmountOfPaymentsRequested() {
-        var maybeSum = paymentRequests.values().stream()
-                .map(PaymentRequest::getAmountToPay)
-                .reduce(MonetaryFunctions.sum());
-        return maybeSum.orElse(Money.zero(this.amount.getCurrency()));
+        return ZarCents.toAmount(centsRequested);
+    }
+
+    public long totalCentsOfPaymentsRequested() {
+        return centsRequested;
     }
 
     public MonetaryAmount totalAmountAvailableForPaymentRequests() {
-        return this.amount.subtract(this.totalAmountOfPaymentsRequested());
+        return ZarCents.toAmount(totalCentsAvailableForPaymentRequests());
+    }
+
+    public long totalCentsAvailableForPaymentRequests() {
+        return ZarCents.subtract(amountInCents, centsRequested);
     }
 
+    /**
+     * Kept as a running total, updated as payment requests are paid.
+     */
     public MonetaryAmount totalAmountForPaymentsReceived() {
-        return paymentRequests.values().stream()
-                .filter(PaymentRequest::isPaid)
-                .map(PaymentRequest::getAmountToPay)
-                .reduce(MonetaryFunctions.sum())
-                .orElse(Money.zero(this.amount.getCurrency()));
+        return ZarCents.toAmount(centsReceived.get());
+    }
+
+    public long totalCentsForPaymentsReceived() {
+        return centsReceived.get();
     }
 
     public MonetaryAmount amountLessPaymentsReceived() {
-        var sum = totalAmountForPaymentsReceived();
-        return this.amount.subtract(sum);
+        return ZarCents.toAmount(ZarCents.subtract(amountInCents, centsReceived.get()));
     }
 
     public Payment payPaymentRequest(UUID paymentRequestId, Person personWhoShouldPayBack, LocalDate date) {
-        return this.listOfPaymentRequests().stream()
-                .filter(pr -> pr.getId().equals(paymentRequestId))
-                .findFirst()
-                .orElseThrow(() -> new WeShareException("Cannot find payment request"))
-                .pay(personWhoShouldPayBack, date);
+        PaymentRequest paymentRequest = paymentRequests.get(paymentRequestId);
+        if (paymentRequest == null) throw new WeShareException("Cannot find payment request");
+        return paymentRequest.pay(personWhoShouldPayBack, date);
     }
 
     public boolean isFullyPaidByOthers() {
-        return amountLessPaymentsReceived().isEqualTo(ZERO_RANDS);
+        return centsReceived.get() == amountInCents;
     }
 
     public Person getPerson() {
@@ -99,6 +155,10 @@ public class Expense {
         return amount;
     }
 
+    public long getAmountInCents() {
+        return amountInCents;
+    }
+
     public UUID getId() {
         return id;
     }
@@ -0,0 +1,22 @@
+package weshare.model;
+
+import java.util.UUID;
+
+/**
+ * Makes the ids of new expenses and payment requests. Which generator is used can be changed through {@link Ids}.
+ */
+@FunctionalInterface
+public interface IdGenerator {
+    UUID nextId();
+
+    /**
+     * Random (version 4) ids, as made by {@link UUID#randomUUID()}.
+     */
+    static IdGenerator random() {
+        return UUID::randomUUID;
+    }
+
+    static IdGenerator timeOrdered() {
+        return new TimeOrderedIdGenerator();
+    }
+}
@@ -0,0 +1,23 @@
+package weshare.model;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Where the model gets the ids of new expenses and payment requests from. Time-ordered ids are used unless another
+ * {@link IdGenerator} is plugged in.
+ */
+public final class Ids {
+    private static volatile IdGenerator generator = IdGenerator.timeOrdered();
+
+    private Ids() {
+    }
+
+    public static UUID next() {
+        return generator.nextId();
+    }
+
+    public static void use(IdGenerator idGenerator) {
+        generator = Objects.requireNonNull(idGenerator);
+    }
+}
@@ -5,7 +5,9 @@ import com.google.common.base.Objects;
 
 import javax.money.MonetaryAmount;
 import java.time.LocalDate;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static weshare.model.DateHelper.TODAY;
 
@@ -14,27 +16,30 @@ public class PaymentRequest {
     private final Person personWhoShouldPayBack;
 
     private final MonetaryAmount amountToPay;
+    private final long amountInCents;
     private final LocalDate dueDate;
     private final UUID id;
-    private boolean isPaid;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    private volatile Payment payment;
 
     public PaymentRequest(Expense expense, Person personWhoShouldPayBack, MonetaryAmount amountToPay, LocalDate dueDate) {
-        checkPaymentRequestAmount(expense, amountToPay);
+        this(Ids.next(), expense, personWhoShouldPayBack, amountToPay, dueDate);
+    }
+
+    PaymentRequest(UUID id, Expense expense, Person personWhoShouldPayBack, MonetaryAmount amountToPay, LocalDate dueDate) {
+        this.amountInCents = ZarCents.of(amountToPay);
+        checkPaymentRequestAmount(expense, amountInCents);
         checkDueDate(expense, dueDate);
         checkPaymentRequestToSelf(expense, personWhoShouldPayBack);
         this.expense = expense;
         this.personWhoShouldPayBack = personWhoShouldPayBack;
         this.amountToPay = amountToPay;
         this.dueDate = dueDate;
-        this.id = UUID.randomUUID();
-        isPaid = false;
-
+        this.id = id;
     }
 
-    private void checkPaymentRequestAmount(Expense expense, MonetaryAmount amountToPay) {
-        var maxAmountThatCanBeRequested = expense.getAmount()
-                .subtract(expense.totalAmountOfPaymentsRequested());
-        if (amountToPay.isGreaterThan(maxAmountThatCanBeRequested))
+    private void checkPaymentRequestAmount(Expense expense, long amountInCents) {
+        if (amountInCents > expense.totalCentsAvailableForPaymentRequests())
             throw new WeShareException("Total requested amount is more than the expense amount");
     }
 
@@ -52,17 +57,53 @@ public class PaymentRequest {
         return TODAY.until(this.dueDate).getDays();
     }
 
+    /**
+     * Pays this request.
+     *
+     * @throws WeShareException if it has already been paid
+     */
     public Payment pay(Person personPaying, LocalDate paymentDate) {
+        return tryPay(personPaying, paymentDate)
+                .orElseThrow(() -> new WeShareException("Payment request has already been paid"));
+    }
+
+    /**
+     * Pays this request, unless someone else got there first. The payment is checked before anything else, so a wrong
+     * person or date is always an error, even on a request that has already been paid.
+     * <p>
+     * Racing payments are settled without a lock: the one that wins the compare-and-set on {@code claimed} goes on to
+     * build its {@link Payment}, and with it the payer's expense, while the others give up straight away. The winner
+     * adds to the expense's total received before it publishes the payment, so anyone who sees the request as paid
+     * also sees a total that includes it. The reverse is not guaranteed: for a moment the total, and so
+     * {@link Expense#isFullyPaidByOthers()}, can already count a payment that {@link #getPayment()} does not show yet.
+     *
+     * @return the payment, or empty if the request was already paid
+     */
+    public Optional<Payment> tryPay(Person personPaying, LocalDate paymentDate) {
         checkPersonPaying(personPaying);
         checkPaymentDate(paymentDate);
-        this.isPaid = true;
-        return new Payment(this, personPaying, paymentDate);
+        if (claimed.get() || !claimed.compareAndSet(false, true)) return Optional.empty();
+
+        Payment won;
+        try {
+            won = new Payment(this, personPaying, paymentDate);
+        } catch (RuntimeException e) {
+            claimed.set(false);
+            throw e;
+        }
+        expense.paymentReceived(this);
+        payment = won;
+        return Optional.of(won);
     }
 
     public MonetaryAmount getAmountToPay() {
         return amountToPay;
     }
 
+    public long getAmountInCents() {
+        return amountInCents;
+    }
+
     public UUID getId() {
         return id;
     }
@@ -80,7 +121,14 @@ public class PaymentRequest {
     }
 
     public boolean isPaid() {
-        return this.isPaid;
+        return payment != null;
+    }
+
+    /**
+     * @return who paid and when, or empty if it has not been paid yet
+     */
+    public Optional<Payment> getPayment() {
+        return Optional.ofNullable(payment);
     }
 
     public Person getPersonWhoShouldPayBack() {
@@ -7,23 +7,77 @@ package weshare.model;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
+import com.google.common.collect.MapMaker;
 import org.apache.commons.validator.routines.EmailValidator;
 
-public class Person {
+import java.io.Serializable;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentMap;
+
+public class Person implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * One shared instance per email address, held weakly so people nobody refers to any more can be collected.
+     */
+    private static final ConcurrentMap<String, Person> POOL = new MapMaker().weakValues().makeMap();
 
     private final String email;
+    private final String name;
 
+    /**
+     * Keeps the email address in its normalised form, so that a person made here equals the one {@link #of(String)}
+     * gives for the same address.
+     *
+     * @throws WeShareException if the email address is not valid
+     */
     public Person(String email) {
-        if (!EmailValidator.getInstance().isValid(email)) throw new WeShareException("Bad email address");
-        this.email = email;
+        String normalised = email == null ? null : normalise(email);
+        if (!EmailValidator.getInstance().isValid(normalised)) throw new WeShareException("Bad email address");
+        this.email = normalised;
+        this.name = nameFrom(normalised);
+    }
+
+    /**
+     * The shared instance for an email address, in its normalised form. The address is only validated the first time
+     * it is seen, and comparing two people from the pool usually stops at an identity check.
+     *
+     * @throws WeShareException if the email address is not valid
+     */
+    public static Person of(String email) {
+        if (email == null) throw new WeShareException("Bad email address");
+        String normalised = normalise(email);
+        Person pooled = POOL.get(normalised);
+        return pooled != null ? pooled : POOL.computeIfAbsent(normalised, Person::new);
+    }
+
+    /**
+     * Email addresses are compared without surrounding whitespace and regardless of case.
+     */
+    public static String normalise(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
     }
 
     public String getEmail() {
         return email;
     }
 
+    /**
+     * Worked out once, when the person is created, since it is shown on every row of most pages.
+     */
     public String getName() {
-        String pseudonym = this.email.split("@")[0];
+        return name;
+    }
+
+    /**
+     * A person read back from a saved session is swapped for the shared instance.
+     */
+    private Object readResolve() {
+        return of(email);
+    }
+
+    private static String nameFrom(String email) {
+        String pseudonym = email.substring(0, email.indexOf('@'));
         return pseudonym.substring(0, 1).toUpperCase() + pseudonym.substring(1);
     }
 
@@ -0,0 +1,65 @@
+package weshare.model;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Makes version 7 UUIDs: the top 48 bits are the time in milliseconds, so ids sort in the order they were made, which
+ * keeps sorted indexes and the journal appending at the end instead of scattering across them.
+ * <p>
+ * The 12 bits after the version are a counter within the millisecond. The time and the counter are kept together in
+ * one {@link AtomicLong} and moved forward with a compare-and-set, so the ids from one generator are strictly
+ * increasing and unique without a lock, even if the clock goes backwards. If more than 4096 ids are made in one
+ * millisecond the counter carries into the next one. The remaining 62 bits are random and, because ids end up in
+ * URLs, must not be guessable: they come from a {@link SecureRandom} DRBG per thread, each seeded by the system, so
+ * unlike {@link UUID#randomUUID()} no thread waits on a shared one.
+ */
+final class TimeOrderedIdGenerator implements IdGenerator {
+    private static final int COUNTER_BITS = 12;
+    private static final long VERSION_7 = 0x7000L;
+    private static final long VARIANT = 0x8000_0000_0000_0000L;
+    private static final long RANDOM_BITS = 0x3FFF_FFFF_FFFF_FFFFL;
+
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(TimeOrderedIdGenerator::newRandom);
+
+    private final AtomicLong lastTimeAndCounter = new AtomicLong();
+    private final LongSupplier clock;
+
+    TimeOrderedIdGenerator() {
+        this(System::currentTimeMillis);
+    }
+
+    TimeOrderedIdGenerator(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public UUID nextId() {
+        long timeAndCounter = nextTimeAndCounter();
+        long millis = timeAndCounter >>> COUNTER_BITS;
+        long counter = timeAndCounter & ((1L << COUNTER_BITS) - 1);
+        long mostSignificant = (millis << 16) | VERSION_7 | counter;
+        long leastSignificant = VARIANT | (RANDOM.get().nextLong() & RANDOM_BITS);
+        return new UUID(mostSignificant, leastSignificant);
+    }
+
+    private long nextTimeAndCounter() {
+        long now = clock.getAsLong() << COUNTER_BITS;
+        while (true) {
+            long last = lastTimeAndCounter.get();
+            long next = Math.max(now, last + 1);
+            if (lastTimeAndCounter.compareAndSet(last, next)) return next;
+        }
+    }
+
+    private static SecureRandom newRandom() {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package weshare.model;
+
+import org.javamoney.moneta.Money;
+
+import javax.money.CurrencyUnit;
+import javax.money.Monetary;
+import javax.money.MonetaryAmount;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Rand amounts as a plain {@code long} number of cents.
+ * <p>
+ * Adding up and comparing amounts this way allocates nothing, unlike {@link MonetaryAmount}, which wraps a
+ * {@link BigDecimal} for every intermediate value. The model keeps its totals in cents and only turns them into a
+ * {@link MonetaryAmount} when one is shown.
+ */
+public final class ZarCents {
+    public static final CurrencyUnit ZAR = Monetary.getCurrency("ZAR");
+
+    private ZarCents() {
+    }
+
+    /**
+     * Converts an amount to cents, rounding anything smaller than a cent to the nearest cent.
+     */
+    public static long of(MonetaryAmount amount) {
+        if (!ZAR.equals(amount.getCurrency()))
+            throw new WeShareException("Only amounts in rand are supported, not " + amount.getCurrency());
+        return amount.getNumber().numberValue(BigDecimal.class)
+                .movePointRight(ZAR.getDefaultFractionDigits())
+                .setScale(0, RoundingMode.HALF_EVEN)
+                .longValueExact();
+    }
+
+    public static MonetaryAmount toAmount(long cents) {
+        return Money.ofMinor(ZAR, cents);
+    }
+
+    public static long add(long cents, long moreCents) {
+        return Math.addExact(cents, moreCents);
+    }
+
+    public static long subtract(long cents, long lessCents) {
+        return Math.subtractExact(cents, lessCents);
+    }
+}
@@ -0,0 +1,95 @@
+package weshare.persistence;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+import weshare.model.Expense;
+import weshare.model.PaymentRequest;
+import weshare.model.WeShareException;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * A position in a list of expenses or payment requests, used for keyset pagination. It is the sort key of the last
+ * item on a page: the date and id of an expense, or the due date and id of a payment request. The next page starts
+ * with whatever sorts after it, so fetching a page costs the same however far into the list it is.
+ */
+public final class Cursor {
+    /**
+     * Expenses are listed most recent first.
+     */
+    public static final Comparator<Cursor> NEWEST_FIRST = Comparator.comparing(Cursor::getDate)
+            .thenComparing(Cursor::getId)
+            .reversed();
+
+    /**
+     * Payment requests are listed soonest due first.
+     */
+    public static final Comparator<Cursor> SOONEST_FIRST = Comparator.comparing(Cursor::getDate)
+            .thenComparing(Cursor::getId);
+
+    private static final char SEPARATOR = '_';
+
+    private final LocalDate date;
+    private final UUID id;
+
+    public Cursor(LocalDate date, UUID id) {
+        this.date = date;
+        this.id = id;
+    }
+
+    public static Cursor of(Expense expense) {
+        return new Cursor(expense.getDate(), expense.getId());
+    }
+
+    public static Cursor of(PaymentRequest paymentRequest) {
+        return new Cursor(paymentRequest.getDueDate(), paymentRequest.getId());
+    }
+
+    /**
+     * Reads a cursor back from the form produced by {@link #toString()}.
+     *
+     * @return the cursor, or null for an empty value, which means the first page
+     */
+    public static Cursor parse(String value) {
+        if (value == null || value.isBlank()) return null;
+        int separator = value.indexOf(SEPARATOR);
+        try {
+            if (separator < 0) throw new IllegalArgumentException();
+            return new Cursor(LocalDate.parse(value.substring(0, separator)), UUID.fromString(value.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new WeShareException("Bad page cursor " + value);
+        }
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Cursor cursor = (Cursor) o;
+        return Objects.equal(date, cursor.date) && Objects.equal(id, cursor.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(date, id);
+    }
+
+    /**
+     * The form used in page links, e.g. {@code 2022-09-05_0b7e...}.
+     */
+    @Override
+    public String toString() {
+        return date.toString() + SEPARATOR + id;
+    }
+}
@@ -12,6 +12,7 @@ import weshare.model.Person;
 import java.util.Collection;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface ExpenseDAO {
     Collection<Expense> findExpensesForPerson(Person person);
@@ -20,7 +21,65 @@ public interface ExpenseDAO {
 
     Optional<Expense> get(UUID id);
 
+    /**
+     * Finds a payment request by its id, whoever it belongs to, without looking through anyone's expenses.
+     */
+    Optional<PaymentRequest> getPaymentRequest(UUID id);
+
     Collection<PaymentRequest> findPaymentRequestsSent(Person person);
 
     Collection<PaymentRequest> findPaymentRequestsReceived(Person person);
+
+    /**
+     * A page of the expenses a person owns, most recent first.
+     *
+     * @param after the cursor of the previous page, or null for the first page
+     */
+    Page<Expense> findExpensesForPerson(Person person, Cursor after, int limit);
+
+    /**
+     * A page of the expenses a person owns that others have not yet paid back in full, most recent first.
+     *
+     * @param after the cursor of the previous page, or null for the first page
+     */
+    Page<Expense> findOpenExpensesForPerson(Person person, Cursor after, int limit);
+
+    /**
+     * A page of the payment requests a person sent, soonest due first.
+     *
+     * @param after the cursor of the previous page, or null for the first page
+     */
+    Page<PaymentRequest> findPaymentRequestsSent(Person person, Cursor after, int limit);
+
+    /**
+     * A page of the payment requests a person received, soonest due first.
+     *
+     * @param after the cursor of the previous page, or null for the first page
+     */
+    Page<PaymentRequest> findPaymentRequestsReceived(Person person, Cursor after, int limit);
+
+    /**
+     * The expenses a person owns, most recent first, read lazily so they can be aggregated without being copied.
+     */
+    Stream<Expense> streamExpensesForPerson(Person person);
+
+    /**
+     * The payment requests a person sent, soonest due first, read lazily.
+     */
+    Stream<PaymentRequest> streamPaymentRequestsSent(Person person);
+
+    /**
+     * The payment requests a person received, soonest due first, read lazily.
+     */
+    Stream<PaymentRequest> streamPaymentRequestsReceived(Person person);
+
+    /**
+     * How many expenses are stored, for reporting on the size of the data.
+     */
+    long countExpenses();
+
+    /**
+     * How many payment requests are stored, across every expense, for reporting on the size of the data.
+     */
+    long countPaymentRequests();
 }
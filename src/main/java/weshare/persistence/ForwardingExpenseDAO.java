@@ -0,0 +1,94 @@
+package weshare.persistence;
+
+import weshare.model.Expense;
+import weshare.model.PaymentRequest;
+import weshare.model.Person;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * An {@link ExpenseDAO} that passes every call on to another one. Decorators extend me and override only the
+ * operations they add behaviour to.
+ */
+public abstract class ForwardingExpenseDAO implements ExpenseDAO {
+
+    protected abstract ExpenseDAO delegate();
+
+    @Override
+    public Collection<Expense> findExpensesForPerson(Person person) {
+        return delegate().findExpensesForPerson(person);
+    }
+
+    @Override
+    public Expense save(Expense expense) {
+        return delegate().save(expense);
+    }
+
+    @Override
+    public Optional<Expense> get(UUID id) {
+        return delegate().get(id);
+    }
+
+    @Override
+    public Optional<PaymentRequest> getPaymentRequest(UUID id) {
+        return delegate().getPaymentRequest(id);
+    }
+
+    @Override
+    public Collection<PaymentRequest> findPaymentRequestsSent(Person person) {
+        return delegate().findPaymentRequestsSent(person);
+    }
+
+    @Override
+    public Collection<PaymentRequest> findPaymentRequestsReceived(Person person) {
+        return delegate().findPaymentRequestsReceived(person);
+    }
+
+    @Override
+    public Page<Expense> findExpensesForPerson(Person person, Cursor after, int limit) {
+        return delegate().findExpensesForPerson(person, after, limit);
+    }
+
+    @Override
+    public Page<Expense> findOpenExpensesForPerson(Person person, Cursor after, int limit) {
+        return delegate().findOpenExpensesForPerson(person, after, limit);
+    }
+
+    @Override
+    public Page<PaymentRequest> findPaymentRequestsSent(Person person, Cursor after, int limit) {
+        return delegate().findPaymentRequestsSent(person, after, limit);
+    }
+
+    @Override
+    public Page<PaymentRequest> findPaymentRequestsReceived(Person person, Cursor after, int limit) {
+        return delegate().findPaymentRequestsReceived(person, after, limit);
+    }
+
+    @Override
+    public Stream<Expense> streamExpensesForPerson(Person person) {
+        return delegate().streamExpensesForPerson(person);
+    }
+
+    @Override
+    public Stream<PaymentRequest> streamPaymentRequestsSent(Person person) {
+        return delegate().streamPaymentRequestsSent(person);
+    }
+
+    @Override
+    public Stream<PaymentRequest> streamPaymentRequestsReceived(Person person) {
+        return delegate().streamPaymentRequestsReceived(person);
+    }
+
+    @Override
+    public long countExpenses() {
+        return delegate().countExpenses();
+    }
+
+    @Override
+    public long countPaymentRequests() {
+        return delegate().countPaymentRequests();
+    }
+}
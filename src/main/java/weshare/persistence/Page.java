@@ -0,0 +1,70 @@
+package weshare.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.function.Predicate;
+
+/**
+ * One page of results from a keyset-paginated query.
+ */
+public final class Page<T> {
+    private final List<T> items;
+    private final Cursor nextCursor;
+
+    public Page(List<T> items, Cursor nextCursor) {
+        this.items = List.copyOf(items);
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Takes up to {@code limit} items that sort after {@code after} from an ordered index. If there are more, the page
+     * ends with a cursor at its last item.
+     *
+     * @param after where the previous page ended, or null for the first page
+     */
+    public static <T> Page<T> after(NavigableMap<Cursor, T> ordered, Cursor after, int limit) {
+        return after(ordered, after, limit, item -> true);
+    }
+
+    /**
+     * Like {@link #after(NavigableMap, Cursor, int)}, but only takes the items that match {@code include}. The others are
+     * skipped before the limit is applied, so a page is only short, or has no next page, when nothing else matches.
+     */
+    public static <T> Page<T> after(NavigableMap<Cursor, T> ordered, Cursor after, int limit, Predicate<? super T> include) {
+        if (limit < 1) throw new IllegalArgumentException("Page size must be at least 1, not " + limit);
+        NavigableMap<Cursor, T> rest = after == null ? ordered : ordered.tailMap(after, false);
+        List<T> items = new ArrayList<>(Math.min(limit, 64));
+        Cursor last = null;
+        for (Map.Entry<Cursor, T> entry : rest.entrySet()) {
+            if (!include.test(entry.getValue())) continue;
+            if (items.size() == limit) return new Page<>(items, last);
+            items.add(entry.getValue());
+            last = entry.getKey();
+        }
+        return new Page<>(items, null);
+    }
+
+    /**
+     * A page with nothing on it.
+     */
+    public static <T> Page<T> empty() {
+        return new Page<>(List.of(), null);
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return where the next page starts, or null if this is the last page
+     */
+    public Cursor getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
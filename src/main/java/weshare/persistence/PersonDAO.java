@@ -12,4 +12,9 @@ import java.util.Optional;
 public interface PersonDAO {
     Optional<Person> findPersonByEmail(String email);
     Person savePerson(Person person);
+
+    /**
+     * How many people are registered, for reporting on the size of the data.
+     */
+    long countPeople();
 }
@@ -0,0 +1,34 @@
+package weshare.persistence.analytics;
+
+import weshare.model.Expense;
+import weshare.persistence.ExpenseDAO;
+import weshare.persistence.ForwardingExpenseDAO;
+
+/**
+ * An {@link ExpenseDAO} that keeps {@link ExpenseColumns} up to date with every expense that is saved.
+ */
+public class ColumnarExpenseDAO extends ForwardingExpenseDAO {
+    private final ExpenseDAO delegate;
+    private final ExpenseColumns columns;
+
+    /**
+     * @param existing the expenses the delegate already holds, which are copied into the columns straight away
+     */
+    public ColumnarExpenseDAO(ExpenseDAO delegate, ExpenseColumns columns, Iterable<Expense> existing) {
+        this.delegate = delegate;
+        this.columns = columns;
+        existing.forEach(columns::update);
+    }
+
+    @Override
+    protected ExpenseDAO delegate() {
+        return delegate;
+    }
+
+    @Override
+    public Expense save(Expense expense) {
+        Expense saved = delegate.save(expense);
+        columns.update(saved);
+        return saved;
+    }
+}
@@ -0,0 +1,290 @@
+package weshare.persistence.analytics;
+
+import weshare.model.Expense;
+import weshare.model.PaymentRequest;
+import weshare.model.Person;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A columnar copy of every expense and payment request, for reports across all users.
+ * <p>
+ * Each field is kept in its own primitive array, one row per expense or payment request, with people replaced by a
+ * small int id. A report is then a loop over a couple of arrays that adds up cents into buckets, instead of a walk
+ * over {@link Expense} objects and their money amounts. Once there are enough rows, the loop for a grand total is
+ * split up and run in parallel on the common {@link ForkJoinPool}. Reports per person or per month stay sequential:
+ * each part of a split would need its own array with a bucket for every key, so with many people the copies and
+ * merges would cost more than the split saves.
+ * <p>
+ * Rows are added or overwritten by {@link #update(Expense)} under a write lock, and reports run under the read lock.
+ */
+public class ExpenseColumns {
+    private static final int INITIAL_ROWS = 1024;
+    static final int PARALLEL_THRESHOLD = 1 << 15;
+
+    private final Lock readLock;
+    private final Lock writeLock;
+
+    private final Map<Person, Integer> personIds = new HashMap<>();
+    private final List<Person> people = new ArrayList<>();
+
+    private final Map<UUID, Integer> expenseRows = new HashMap<>();
+    private int expenseCount;
+    private int[] expenseOwner = new int[INITIAL_ROWS];
+    private int[] expenseDay = new int[INITIAL_ROWS];
+    private int[] expenseMonth = new int[INITIAL_ROWS]; // worked out from the day up front, for grouping by month
+    private long[] expenseCents = new long[INITIAL_ROWS];
+    private int firstMonth = Integer.MAX_VALUE;
+    private int lastMonth = Integer.MIN_VALUE;
+
+    private final Map<UUID, Integer> requestRows = new HashMap<>();
+    private int requestCount;
+    private int[] requestDebtor = new int[INITIAL_ROWS];
+    private int[] requestCreditor = new int[INITIAL_ROWS];
+    private long[] requestCents = new long[INITIAL_ROWS];
+    private boolean[] requestPaid = new boolean[INITIAL_ROWS];
+
+    public ExpenseColumns() {
+        ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        this.readLock = lock.readLock();
+        this.writeLock = lock.writeLock();
+    }
+
+    /**
+     * Adds the expense and its payment requests, or overwrites the rows they already have.
+     */
+    public void update(Expense expense) {
+        writeLock.lock();
+        try {
+            int owner = personId(expense.getPerson());
+            int row = expenseRows.computeIfAbsent(expense.getId(), id -> newExpenseRow());
+            int month = monthOf(expense.getDate());
+            expenseOwner[row] = owner;
+            expenseDay[row] = (int) expense.getDate().toEpochDay();
+            expenseMonth[row] = month;
+            expenseCents[row] = expense.getAmountInCents();
+            firstMonth = Math.min(firstMonth, month);
+            lastMonth = Math.max(lastMonth, month);
+
+            for (PaymentRequest paymentRequest : expense.listOfPaymentRequests()) {
+                int requestRow = requestRows.computeIfAbsent(paymentRequest.getId(), id -> newRequestRow());
+                requestDebtor[requestRow] = personId(paymentRequest.getPersonWhoShouldPayBack());
+                requestCreditor[requestRow] = owner;
+                requestCents[requestRow] = paymentRequest.getAmountInCents();
+                requestPaid[requestRow] = paymentRequest.isPaid();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public int expenseCount() {
+        readLock.lock();
+        try {
+            return expenseCount;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * What was spent in each month, in cents, for every month from the first expense to the last.
+     */
+    public SortedMap<YearMonth, Long> totalCentsPerMonth() {
+        readLock.lock();
+        try {
+            SortedMap<YearMonth, Long> totals = new TreeMap<>();
+            if (expenseCount == 0) return totals;
+            long[] sums = sum(expenseMonth, firstMonth, expenseCents, null, expenseCount, lastMonth - firstMonth + 1);
+            for (int i = 0; i < sums.length; i++) {
+                int month = firstMonth + i;
+                totals.put(YearMonth.of(Math.floorDiv(month, 12), Math.floorMod(month, 12) + 1), sums[i]);
+            }
+            return totals;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * What each person spent in total, in cents.
+     */
+    public Map<Person, Long> totalCentsPerPerson() {
+        readLock.lock();
+        try {
+            return byPerson(sum(expenseOwner, 0, expenseCents, null, expenseCount, people.size()));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * What each person still owes on payment requests they have not paid, in cents. People who owe nothing are left
+     * out.
+     */
+    public Map<Person, Long> outstandingCentsPerDebtor() {
+        readLock.lock();
+        try {
+            return byPerson(sum(requestDebtor, 0, requestCents, requestPaid, requestCount, people.size()));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * What each person is still owed on payment requests they sent, in cents. People who are owed nothing are left
+     * out.
+     */
+    public Map<Person, Long> outstandingCentsPerCreditor() {
+        readLock.lock();
+        try {
+            return byPerson(sum(requestCreditor, 0, requestCents, requestPaid, requestCount, people.size()));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * What everyone still owes everyone, in cents.
+     */
+    public long outstandingCents() {
+        readLock.lock();
+        try {
+            return total(requestCents, requestPaid, requestCount);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * What was spent by everyone from one day to another, both included, in cents.
+     */
+    public long totalCentsBetween(LocalDate from, LocalDate to) {
+        int first = (int) from.toEpochDay();
+        int last = (int) to.toEpochDay();
+        readLock.lock();
+        try {
+            long total = 0;
+            for (int row = 0; row < expenseCount; row++) {
+                int day = expenseDay[row];
+                if (day >= first && day <= last) total += expenseCents[row];
+            }
+            return total;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Adds up {@code values} into buckets chosen by {@code keys}, in one pass into one array, leaving out rows that are
+     * paid when {@code paid} is given.
+     */
+    private static long[] sum(int[] keys, int keyOffset, long[] values, boolean[] paid, int rows, int buckets) {
+        long[] sums = new long[buckets];
+        for (int row = 0; row < rows; row++) {
+            if (paid != null && paid[row]) continue;
+            sums[keys[row] - keyOffset] += values[row];
+        }
+        return sums;
+    }
+
+    /**
+     * Adds up {@code values}, in parallel once there are enough rows, leaving out rows that are paid.
+     */
+    private static long total(long[] values, boolean[] paid, int rows) {
+        Total task = new Total(values, paid, 0, rows);
+        return rows < PARALLEL_THRESHOLD ? task.compute() : ForkJoinPool.commonPool().invoke(task);
+    }
+
+    private Map<Person, Long> byPerson(long[] sums) {
+        Map<Person, Long> totals = new LinkedHashMap<>();
+        for (int i = 0; i < sums.length; i++) {
+            if (sums[i] != 0) totals.put(people.get(i), sums[i]);
+        }
+        return Collections.unmodifiableMap(totals);
+    }
+
+    private int personId(Person person) {
+        return personIds.computeIfAbsent(person, p -> {
+            people.add(p);
+            return people.size() - 1;
+        });
+    }
+
+    private int newExpenseRow() {
+        if (expenseCount == expenseOwner.length) {
+            int capacity = expenseCount * 2;
+            expenseOwner = Arrays.copyOf(expenseOwner, capacity);
+            expenseDay = Arrays.copyOf(expenseDay, capacity);
+            expenseMonth = Arrays.copyOf(expenseMonth, capacity);
+            expenseCents = Arrays.copyOf(expenseCents, capacity);
+        }
+        return expenseCount++;
+    }
+
+    private int newRequestRow() {
+        if (requestCount == requestDebtor.length) {
+            int capacity = requestCount * 2;
+            requestDebtor = Arrays.copyOf(requestDebtor, capacity);
+            requestCreditor = Arrays.copyOf(requestCreditor, capacity);
+            requestCents = Arrays.copyOf(requestCents, capacity);
+            requestPaid = Arrays.copyOf(requestPaid, capacity);
+        }
+        return requestCount++;
+    }
+
+    private static int monthOf(LocalDate date) {
+        return date.getYear() * 12 + date.getMonthValue() - 1;
+    }
+
+    /**
+     * Totals a range of rows, splitting it in two while it is larger than {@link #PARALLEL_THRESHOLD}.
+     */
+    private static class Total extends RecursiveTask<Long> {
+        private final long[] values;
+        private final boolean[] paid;
+        private final int from;
+        private final int to;
+
+        private Total(long[] values, boolean[] paid, int from, int to) {
+            this.values = values;
+            this.paid = paid;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= PARALLEL_THRESHOLD) return totalRange();
+            int middle = (from + to) >>> 1;
+            Total left = new Total(values, paid, from, middle);
+            Total right = new Total(values, paid, middle, to);
+            left.fork();
+            long total = right.compute();
+            return total + left.join();
+        }
+
+        private long totalRange() {
+            long total = 0;
+            for (int row = from; row < to; row++) {
+                if (!paid[row]) total += values[row];
+            }
+            return total;
+        }
+    }
+}
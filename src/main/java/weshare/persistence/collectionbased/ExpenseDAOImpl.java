@@ -8,58 +8,176 @@ package weshare.persistence.collectionbased;
 import weshare.model.Expense;
 import weshare.model.PaymentRequest;
 import weshare.model.Person;
+import weshare.persistence.Cursor;
 import weshare.persistence.ExpenseDAO;
+import weshare.persistence.Page;
 
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
 
 public class ExpenseDAOImpl implements ExpenseDAO {
     private final Map<UUID, Expense> expenses;
+    private final Map<UUID, PaymentRequest> paymentRequestsById;
+    private final Map<Person, ConcurrentNavigableMap<Cursor, Expense>> expensesByPerson;
+    private final Map<Person, ConcurrentNavigableMap<Cursor, Expense>> openExpensesByPerson;
+    private final Map<Person, ConcurrentNavigableMap<Cursor, PaymentRequest>> paymentRequestsByCreditor;
+    private final Map<Person, ConcurrentNavigableMap<Cursor, PaymentRequest>> paymentRequestsByDebtor;
 
     public ExpenseDAOImpl() {
-        expenses = new ConcurrentHashMap<>();
+        this(new ConcurrentHashMap<>());
     }
 
     public ExpenseDAOImpl(Map<UUID, Expense> expenses) {
         this.expenses = expenses;
+        this.paymentRequestsById = new ConcurrentHashMap<>();
+        this.expensesByPerson = new ConcurrentHashMap<>();
+        this.openExpensesByPerson = new ConcurrentHashMap<>();
+        this.paymentRequestsByCreditor = new ConcurrentHashMap<>();
+        this.paymentRequestsByDebtor = new ConcurrentHashMap<>();
+        expenses.values().forEach(this::index);
     }
 
     @Override
     public Collection<Expense> findExpensesForPerson(Person person) {
-        return expenses.values().stream()
-                .filter(e -> e.getPerson().equals(person))
-                .collect(Collectors.toUnmodifiableList());
+        return valuesOf(expensesByPerson, person);
     }
 
     @Override
     public Expense save(Expense expense) {
-        expenses.put(expense.getId(), expense);
+        expenses.compute(expense.getId(), (id, previous) -> {
+            if (previous != null && !previous.getPerson().equals(expense.getPerson())) unindexOwner(previous);
+            index(expense);
+            return expense;
+        });
         return expense;
     }
 
     @Override
     public Optional<Expense> get(UUID id) {
-        return expenses.containsKey(id) ? Optional.of(expenses.get(id)) : Optional.empty();
+        return Optional.ofNullable(expenses.get(id));
+    }
+
+    @Override
+    public Optional<PaymentRequest> getPaymentRequest(UUID id) {
+        return Optional.ofNullable(paymentRequestsById.get(id));
+    }
+
+    @Override
+    public long countExpenses() {
+        return expenses.size();
+    }
+
+    @Override
+    public long countPaymentRequests() {
+        return paymentRequestsById.size();
     }
 
     @Override
     public Collection<PaymentRequest> findPaymentRequestsSent(Person person) {
-        return findExpensesForPerson(person).stream()
-                .map(Expense::listOfPaymentRequests)
-                .flatMap(Collection::stream)
-                .collect(Collectors.toUnmodifiableList());
+        return valuesOf(paymentRequestsByCreditor, person);
     }
 
     @Override
     public Collection<PaymentRequest> findPaymentRequestsReceived(Person person) {
-        return expenses.values().stream()
-                .map(Expense::listOfPaymentRequests)
-                .flatMap(Collection::stream)
-                .filter(pr -> pr.getPersonWhoShouldPayBack().equals(person))
-                .collect(Collectors.toUnmodifiableList());
+        return valuesOf(paymentRequestsByDebtor, person);
+    }
+
+    @Override
+    public Page<Expense> findExpensesForPerson(Person person, Cursor after, int limit) {
+        return pageOf(expensesByPerson, person, after, limit);
+    }
+
+    /**
+     * Pages over an index of the open expenses only, so the cost of a page does not grow with how many are settled. An
+     * expense leaves that index when it is saved fully paid; until then the filter skips it.
+     */
+    @Override
+    public Page<Expense> findOpenExpensesForPerson(Person person, Cursor after, int limit) {
+        ConcurrentNavigableMap<Cursor, Expense> items = openExpensesByPerson.get(person);
+        return items == null ? Page.empty() : Page.after(items, after, limit, expense -> !expense.isFullyPaidByOthers());
+    }
+
+    @Override
+    public Page<PaymentRequest> findPaymentRequestsSent(Person person, Cursor after, int limit) {
+        return pageOf(paymentRequestsByCreditor, person, after, limit);
+    }
+
+    @Override
+    public Page<PaymentRequest> findPaymentRequestsReceived(Person person, Cursor after, int limit) {
+        return pageOf(paymentRequestsByDebtor, person, after, limit);
+    }
+
+    /**
+     * Streams straight off the skip-list index. Its spliterator is weakly consistent, so it never fails because of a
+     * concurrent save, and it splits for parallel streams.
+     */
+    @Override
+    public Stream<Expense> streamExpensesForPerson(Person person) {
+        return streamOf(expensesByPerson, person);
+    }
+
+    @Override
+    public Stream<PaymentRequest> streamPaymentRequestsSent(Person person) {
+        return streamOf(paymentRequestsByCreditor, person);
+    }
+
+    @Override
+    public Stream<PaymentRequest> streamPaymentRequestsReceived(Person person) {
+        return streamOf(paymentRequestsByDebtor, person);
+    }
+
+    /**
+     * Every index is keyed by the same cursor the pages use, so re-saving an expense simply replaces it in place.
+     */
+    private void index(Expense expense) {
+        indexFor(expensesByPerson, expense.getPerson(), Cursor.NEWEST_FIRST).put(Cursor.of(expense), expense);
+        ConcurrentNavigableMap<Cursor, Expense> open = indexFor(openExpensesByPerson, expense.getPerson(), Cursor.NEWEST_FIRST);
+        if (expense.isFullyPaidByOthers()) open.remove(Cursor.of(expense));
+        else open.put(Cursor.of(expense), expense);
+        for (PaymentRequest paymentRequest : expense.listOfPaymentRequests()) {
+            paymentRequestsById.put(paymentRequest.getId(), paymentRequest);
+            Cursor key = Cursor.of(paymentRequest);
+            indexFor(paymentRequestsByCreditor, expense.getPerson(), Cursor.SOONEST_FIRST).put(key, paymentRequest);
+            indexFor(paymentRequestsByDebtor, paymentRequest.getPersonWhoShouldPayBack(), Cursor.SOONEST_FIRST).put(key, paymentRequest);
+        }
+    }
+
+    /**
+     * Empty indexes are left in place, so that a concurrent save for the same person never writes to one that has
+     * just been dropped.
+     */
+    private void unindexOwner(Expense previous) {
+        Person owner = previous.getPerson();
+        indexFor(expensesByPerson, owner, Cursor.NEWEST_FIRST).remove(Cursor.of(previous));
+        indexFor(openExpensesByPerson, owner, Cursor.NEWEST_FIRST).remove(Cursor.of(previous));
+        ConcurrentNavigableMap<Cursor, PaymentRequest> sent = indexFor(paymentRequestsByCreditor, owner, Cursor.SOONEST_FIRST);
+        previous.listOfPaymentRequests().forEach(paymentRequest -> sent.remove(Cursor.of(paymentRequest)));
+    }
+
+    private static <T> ConcurrentNavigableMap<Cursor, T> indexFor(Map<Person, ConcurrentNavigableMap<Cursor, T>> index, Person person, Comparator<Cursor> order) {
+        return index.computeIfAbsent(person, p -> new ConcurrentSkipListMap<>(order));
+    }
+
+    private static <T> List<T> valuesOf(Map<Person, ConcurrentNavigableMap<Cursor, T>> index, Person person) {
+        ConcurrentNavigableMap<Cursor, T> items = index.get(person);
+        return items == null ? List.of() : List.copyOf(items.values());
+    }
+
+    private static <T> Stream<T> streamOf(Map<Person, ConcurrentNavigableMap<Cursor, T>> index, Person person) {
+        ConcurrentNavigableMap<Cursor, T> items = index.get(person);
+        return items == null ? Stream.empty() : items.values().stream();
+    }
+
+    private static <T> Page<T> pageOf(Map<Person, ConcurrentNavigableMap<Cursor, T>> index, Person person, Cursor after, int limit) {
+        ConcurrentNavigableMap<Cursor, T> items = index.get(person);
+        return items == null ? Page.empty() : Page.after(items, after, limit);
     }
 }
@@ -9,29 +9,41 @@ import weshare.model.Person;
 import weshare.persistence.PersonDAO;
 
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class PersonDAOImpl implements PersonDAO {
-    private final Set<Person> setOfPeople;
+    private final Map<String, Person> peopleByEmail;
 
     public PersonDAOImpl() {
-        setOfPeople = new HashSet<>();
+        peopleByEmail = new ConcurrentHashMap<>();
     }
 
     public PersonDAOImpl(Collection<Person> people) {
-        setOfPeople = new HashSet<>(people);
+        this();
+        people.forEach(this::savePerson);
     }
 
     @Override
     public Optional<Person> findPersonByEmail(String email) {
-        return setOfPeople.stream().filter(p -> p.getEmail().equals(email)).findFirst();
+        if (email == null) return Optional.empty();
+        return Optional.ofNullable(peopleByEmail.get(Person.normalise(email)));
     }
 
+    /**
+     * Saves the person unless someone with the same email address is already known.
+     *
+     * @return the person as stored, which is the earlier instance if the email address was already taken
+     */
     @Override
     public Person savePerson(Person person) {
-        if (findPersonByEmail(person.getEmail()).isEmpty()) setOfPeople.add(person);
-        return person;
+        Person existing = peopleByEmail.putIfAbsent(Person.normalise(person.getEmail()), person);
+        return existing == null ? person : existing;
+    }
+
+    @Override
+    public long countPeople() {
+        return peopleByEmail.size();
     }
 }
@@ -0,0 +1,241 @@
+package weshare.persistence.collectionbased;
+
+import weshare.model.Expense;
+import weshare.model.PaymentRequest;
+import weshare.model.Person;
+import weshare.persistence.Cursor;
+import weshare.persistence.ExpenseDAO;
+import weshare.persistence.Page;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An {@link ExpenseDAO} that splits its data into shards by person, each guarded by its own lock, so that people
+ * saving expenses at the same time rarely wait for each other.
+ * <p>
+ * An expense lives in the shard of the person who owns it, and each payment request is also filed in the shard of the
+ * person who should pay it back. Finding someone's expenses, or the payment requests they sent or received, therefore
+ * only ever reads that person's shard. A map from expense id to owner says which shard {@link #get(UUID)} should read.
+ * <p>
+ * A save is not atomic across shards. It writes the expense, with the requests it sent, into its owner's shard
+ * first, and only then makes its payment requests visible by id and in their debtors' shards, so a reader can find a
+ * request before it is indexed everywhere but never without its expense. If the expense changed owner, the old copy
+ * is removed from the previous owner's shard last, so for a moment it can be listed under both.
+ */
+public class ShardedExpenseDAO implements ExpenseDAO {
+    private final Shard[] shards;
+    private final Map<UUID, Person> ownersById = new ConcurrentHashMap<>();
+    private final Map<UUID, PaymentRequest> paymentRequestsById = new ConcurrentHashMap<>();
+
+    public ShardedExpenseDAO() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ShardedExpenseDAO(int shardCount) {
+        if (shardCount < 1) throw new IllegalArgumentException("Need at least one shard, not " + shardCount);
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) shards[i] = new Shard();
+    }
+
+    @Override
+    public Collection<Expense> findExpensesForPerson(Person person) {
+        return shardFor(person).read(shard -> valuesOf(shard.expensesByPerson, person));
+    }
+
+    @Override
+    public Expense save(Expense expense) {
+        Collection<PaymentRequest> paymentRequests = expense.listOfPaymentRequests();
+        Shard owner = shardFor(expense.getPerson());
+        owner.write(shard -> shard.putExpense(expense, paymentRequests));
+        Person previousOwner = ownersById.put(expense.getId(), expense.getPerson());
+
+        paymentRequests.forEach(paymentRequest -> paymentRequestsById.put(paymentRequest.getId(), paymentRequest));
+        Map<Shard, List<PaymentRequest>> byDebtorShard = paymentRequests.stream()
+                .collect(Collectors.groupingBy(pr -> shardFor(pr.getPersonWhoShouldPayBack())));
+        byDebtorShard.forEach((shard, owed) -> shard.write(s -> s.putPaymentRequests(owed)));
+
+        if (previousOwner != null && shardFor(previousOwner) != owner)
+            shardFor(previousOwner).write(shard -> shard.removeExpense(expense.getId(), previousOwner));
+        return expense;
+    }
+
+    @Override
+    public Optional<Expense> get(UUID id) {
+        Person owner = ownersById.get(id);
+        if (owner == null) return Optional.empty();
+        return Optional.ofNullable(shardFor(owner).read(shard -> shard.expenses.get(id)));
+    }
+
+    /**
+     * Payment requests are looked up by id across every shard, so they are kept in one concurrent map of their own.
+     */
+    @Override
+    public Optional<PaymentRequest> getPaymentRequest(UUID id) {
+        return Optional.ofNullable(paymentRequestsById.get(id));
+    }
+
+    @Override
+    public long countExpenses() {
+        return ownersById.size();
+    }
+
+    @Override
+    public long countPaymentRequests() {
+        return paymentRequestsById.size();
+    }
+
+    @Override
+    public Collection<PaymentRequest> findPaymentRequestsSent(Person person) {
+        return shardFor(person).read(shard -> valuesOf(shard.paymentRequestsByCreditor, person));
+    }
+
+    @Override
+    public Collection<PaymentRequest> findPaymentRequestsReceived(Person person) {
+        return shardFor(person).read(shard -> valuesOf(shard.paymentRequestsByDebtor, person));
+    }
+
+    @Override
+    public Page<Expense> findExpensesForPerson(Person person, Cursor after, int limit) {
+        return shardFor(person).read(shard -> pageOf(shard.expensesByPerson, person, after, limit));
+    }
+
+    @Override
+    public Page<Expense> findOpenExpensesForPerson(Person person, Cursor after, int limit) {
+        return shardFor(person).read(shard -> {
+            NavigableMap<Cursor, Expense> items = shard.openExpensesByPerson.get(person);
+            return items == null ? Page.<Expense>empty() : Page.after(items, after, limit, expense -> !expense.isFullyPaidByOthers());
+        });
+    }
+
+    @Override
+    public Page<PaymentRequest> findPaymentRequestsSent(Person person, Cursor after, int limit) {
+        return shardFor(person).read(shard -> pageOf(shard.paymentRequestsByCreditor, person, after, limit));
+    }
+
+    @Override
+    public Page<PaymentRequest> findPaymentRequestsReceived(Person person, Cursor after, int limit) {
+        return shardFor(person).read(shard -> pageOf(shard.paymentRequestsByDebtor, person, after, limit));
+    }
+
+    /**
+     * A shard's maps can only be read under its lock, so the streams are over a copy taken under the read lock.
+     */
+    @Override
+    public Stream<Expense> streamExpensesForPerson(Person person) {
+        return findExpensesForPerson(person).stream();
+    }
+
+    @Override
+    public Stream<PaymentRequest> streamPaymentRequestsSent(Person person) {
+        return findPaymentRequestsSent(person).stream();
+    }
+
+    @Override
+    public Stream<PaymentRequest> streamPaymentRequestsReceived(Person person) {
+        return findPaymentRequestsReceived(person).stream();
+    }
+
+    private Shard shardFor(Person person) {
+        int hash = person.hashCode();
+        return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)];
+    }
+
+    private static <T> List<T> valuesOf(Map<Person, NavigableMap<Cursor, T>> index, Person person) {
+        NavigableMap<Cursor, T> items = index.get(person);
+        return items == null ? List.of() : List.copyOf(items.values());
+    }
+
+    private static <T> Page<T> pageOf(Map<Person, NavigableMap<Cursor, T>> index, Person person, Cursor after, int limit) {
+        NavigableMap<Cursor, T> items = index.get(person);
+        return items == null ? Page.empty() : Page.after(items, after, limit);
+    }
+
+    private static <T> NavigableMap<Cursor, T> indexFor(Map<Person, NavigableMap<Cursor, T>> index, Person person, Comparator<Cursor> order) {
+        return index.computeIfAbsent(person, p -> new TreeMap<>(order));
+    }
+
+    private static class Shard {
+        private final Lock readLock;
+        private final Lock writeLock;
+        private final Map<UUID, Expense> expenses = new HashMap<>();
+        private final Map<Person, NavigableMap<Cursor, Expense>> expensesByPerson = new HashMap<>();
+        private final Map<Person, NavigableMap<Cursor, Expense>> openExpensesByPerson = new HashMap<>();
+        private final Map<Person, NavigableMap<Cursor, PaymentRequest>> paymentRequestsByCreditor = new HashMap<>();
+        private final Map<Person, NavigableMap<Cursor, PaymentRequest>> paymentRequestsByDebtor = new HashMap<>();
+
+        private Shard() {
+            ReadWriteLock lock = new ReentrantReadWriteLock();
+            this.readLock = lock.readLock();
+            this.writeLock = lock.writeLock();
+        }
+
+        private <T> T read(Function<Shard, T> query) {
+            readLock.lock();
+            try {
+                return query.apply(this);
+            } finally {
+                readLock.unlock();
+            }
+        }
+
+        private void write(Consumer<Shard> update) {
+            writeLock.lock();
+            try {
+                update.accept(this);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        private void putExpense(Expense expense, Collection<PaymentRequest> paymentRequests) {
+            Expense previous = expenses.put(expense.getId(), expense);
+            if (previous != null && !previous.getPerson().equals(expense.getPerson())) unindex(previous);
+            indexFor(expensesByPerson, expense.getPerson(), Cursor.NEWEST_FIRST).put(Cursor.of(expense), expense);
+            NavigableMap<Cursor, Expense> open = indexFor(openExpensesByPerson, expense.getPerson(), Cursor.NEWEST_FIRST);
+            if (expense.isFullyPaidByOthers()) open.remove(Cursor.of(expense));
+            else open.put(Cursor.of(expense), expense);
+            NavigableMap<Cursor, PaymentRequest> sent = indexFor(paymentRequestsByCreditor, expense.getPerson(), Cursor.SOONEST_FIRST);
+            paymentRequests.forEach(paymentRequest -> sent.put(Cursor.of(paymentRequest), paymentRequest));
+        }
+
+        /**
+         * Removes an expense that has moved to another owner's shard, unless it has been saved here again since.
+         */
+        private void removeExpense(UUID id, Person previousOwner) {
+            Expense previous = expenses.get(id);
+            if (previous == null || !previous.getPerson().equals(previousOwner)) return;
+            expenses.remove(id);
+            unindex(previous);
+        }
+
+        private void unindex(Expense previous) {
+            expensesByPerson.get(previous.getPerson()).remove(Cursor.of(previous));
+            openExpensesByPerson.get(previous.getPerson()).remove(Cursor.of(previous));
+            NavigableMap<Cursor, PaymentRequest> sent = paymentRequestsByCreditor.get(previous.getPerson());
+            if (sent != null) previous.listOfPaymentRequests().forEach(paymentRequest -> sent.remove(Cursor.of(paymentRequest)));
+        }
+
+        private void putPaymentRequests(Collection<PaymentRequest> paymentRequests) {
+            for (PaymentRequest paymentRequest : paymentRequests) {
+                indexFor(paymentRequestsByDebtor, paymentRequest.getPersonWhoShouldPayBack(), Cursor.SOONEST_FIRST)
+                        .put(Cursor.of(paymentRequest), paymentRequest);
+            }
+        }
+    }
+}
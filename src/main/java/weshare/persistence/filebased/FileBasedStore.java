@@ -0,0 +1,144 @@
+package weshare.persistence.filebased;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import weshare.model.Expense;
+import weshare.model.Person;
+import weshare.persistence.ExpenseDAO;
+import weshare.persistence.PersonDAO;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps people and expenses in a data directory, so that they survive a restart.
+ * <p>
+ * Everything is held in memory and every change is appended to a {@link Journal}. In the background, once the journal
+ * has grown past {@value RECORDS_BEFORE_SNAPSHOT} records, the journal is rotated and a {@link Snapshot} of everything
+ * in memory is written, after which the rotated journal is no longer needed. Opening the store loads the latest
+ * snapshot and then replays only the journal written since.
+ */
+public class FileBasedStore implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(FileBasedStore.class);
+    private static final String SNAPSHOT_FILE = "weshare.snapshot";
+    private static final String JOURNAL_FILE = "weshare.journal";
+    private static final long RECORDS_BEFORE_SNAPSHOT = 100_000;
+    private static final long SNAPSHOT_CHECK_SECONDS = 30;
+
+    private final Path snapshotFile;
+    private final Map<UUID, Expense> expenses = new ConcurrentHashMap<>();
+    private final Set<Person> people = ConcurrentHashMap.newKeySet();
+    private final Journal journal;
+    private final JournalExpenseDAO expenseDAO;
+    private final JournalPersonDAO personDAO;
+    private final ScheduledExecutorService snapshotter;
+
+    private FileBasedStore(Path dataDir) throws IOException {
+        Files.createDirectories(dataDir);
+        this.snapshotFile = dataDir.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshotFile)) {
+            Snapshot snapshot = Snapshot.load(snapshotFile);
+            people.addAll(snapshot.people());
+            snapshot.expenses().forEach(expense -> expenses.put(expense.getId(), expense));
+        }
+        this.journal = Journal.open(dataDir.resolve(JOURNAL_FILE), this::replay);
+        this.expenseDAO = new JournalExpenseDAO(expenses, journal);
+        this.personDAO = new JournalPersonDAO(people, journal);
+
+        this.snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-writer-" + dataDir.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (journal.hasPrevious()) takeSnapshot();
+        snapshotter.scheduleWithFixedDelay(this::snapshotIfJournalIsLong, SNAPSHOT_CHECK_SECONDS, SNAPSHOT_CHECK_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public static FileBasedStore open(Path dataDir) throws IOException {
+        return new FileBasedStore(dataDir);
+    }
+
+    public ExpenseDAO expenseDAO() {
+        return expenseDAO;
+    }
+
+    public PersonDAO personDAO() {
+        return personDAO;
+    }
+
+    /**
+     * Everything loaded or saved so far, for building views over all expenses on top of the store.
+     */
+    public Collection<Expense> expenses() {
+        return Collections.unmodifiableCollection(expenses.values());
+    }
+
+    /**
+     * Writes a snapshot in the background.
+     *
+     * @return completes once the snapshot is on disk and the journal it replaces has been dropped
+     */
+    public CompletableFuture<Void> takeSnapshot() {
+        return CompletableFuture.runAsync(this::writeSnapshot, snapshotter);
+    }
+
+    /**
+     * Takes a final snapshot, so the next start has no journal to replay, and closes the journal.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            takeSnapshot().join();
+        } catch (RuntimeException e) {
+            LOG.warn("Could not take a snapshot on close, the journal will be replayed on the next start", e);
+        }
+        snapshotter.shutdown();
+        journal.close();
+    }
+
+    private void snapshotIfJournalIsLong() {
+        if (journal.recordCount() < RECORDS_BEFORE_SNAPSHOT) return;
+        try {
+            writeSnapshot();
+        } catch (RuntimeException e) {
+            LOG.warn("Could not take a snapshot of {}", snapshotFile, e);
+        }
+    }
+
+    /**
+     * Rotates the journal first, so that the snapshot, taken from memory afterwards, includes everything in the rotated
+     * journal. A previous journal left behind by an earlier failure is already in memory, so it is covered too.
+     */
+    private void writeSnapshot() {
+        try {
+            if (!journal.hasPrevious()) Journal.await(journal.rotate());
+            Snapshot.write(snapshotFile, people, expenses.values());
+            journal.dropPrevious();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write snapshot " + snapshotFile, e);
+        }
+    }
+
+    private void replay(ByteBuffer record) {
+        if (JournalRecords.typeOf(record) == JournalRecords.PERSON) {
+            people.add(JournalRecords.decodePerson(record));
+        } else {
+            Expense expense = JournalRecords.decodeExpense(record);
+            expenses.put(expense.getId(), expense);
+        }
+    }
+}
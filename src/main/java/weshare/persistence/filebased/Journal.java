@@ -0,0 +1,356 @@
+package weshare.persistence.filebased;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only file of records.
+ * <p>
+ * Every record is framed as {@code [length][crc][payload]}. Appends are queued and written by a single writer thread,
+ * which drains everything that is waiting, writes it in one go and then forces the file once for the whole batch, so
+ * concurrent callers share the cost of an fsync.
+ * <p>
+ * To keep replay short the journal can be rotated: the current file is set aside as the previous journal and a new,
+ * empty one is started. Once everything in the previous journal is covered by a snapshot it can be dropped. Until
+ * then, opening the journal replays the previous file before the current one.
+ * <p>
+ * If a write fails, whatever part of the batch reached the file is cut off again, so that later records are never
+ * written behind a torn one. If the file cannot be put back in order, the journal fails: every waiting and later
+ * append completes exceptionally instead of being acknowledged.
+ */
+class Journal implements Closeable {
+    private static final int MAGIC = 0x57534A31; // "WSJ1"
+    private static final int HEADER_SIZE = 4;
+    private static final int FRAME_HEADER_SIZE = 8;
+    private static final int MAX_BATCH = 1024;
+
+    private final Path file;
+    private final Path previousFile;
+    private final BlockingQueue<PendingAppend> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private FileChannel channel;
+    private volatile long recordCount;
+    private final Object lock = new Object();
+    private boolean open = true;
+    private volatile RuntimeException failure;
+
+    private Journal(Path file, FileChannel channel, long recordCount) {
+        this.file = file;
+        this.previousFile = previousFile(file);
+        this.channel = channel;
+        this.recordCount = recordCount;
+        this.writer = new Thread(this::writeLoop, "journal-writer-" + file.getFileName());
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Opens the journal, creating it if needed, and hands every intact record to {@code replay} in the order it was
+     * written. A torn record at the end of the file, left behind by a crash in the middle of a write, is cut off.
+     */
+    static Journal open(Path file, Consumer<ByteBuffer> replay) throws IOException {
+        Path previousFile = previousFile(file);
+        if (Files.exists(previousFile)) {
+            try (FileChannel previous = FileChannel.open(previousFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                replay(previous, previousFile, replay);
+            }
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long recordCount = replay(channel, file, replay);
+        return new Journal(file, channel, recordCount);
+    }
+
+    /**
+     * Queues a record for writing.
+     *
+     * @return completes once the record has been forced to disk
+     */
+    CompletableFuture<Void> append(ByteBuffer record) {
+        return enqueue(new PendingAppend(record));
+    }
+
+    /**
+     * Waits for an append to be forced to disk, rethrowing the reason if it could not be written.
+     */
+    static void await(CompletableFuture<Void> written) {
+        try {
+            written.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Sets the current file aside as the previous journal and carries on in a new one. Records appended before this
+     * call end up in the previous journal.
+     *
+     * @return completes once the new journal is in use; fails if the previous journal has not been dropped yet
+     */
+    CompletableFuture<Void> rotate() {
+        return enqueue(new PendingAppend(null));
+    }
+
+    // checked and queued under the lock, so nothing can be queued behind the CLOSE marker
+    private CompletableFuture<Void> enqueue(PendingAppend pending) {
+        synchronized (lock) {
+            if (!open) throw new IllegalStateException("Journal " + file + " is closed");
+            if (failure != null) return CompletableFuture.failedFuture(failure);
+            queue.add(pending);
+        }
+        return pending.done;
+    }
+
+    boolean hasPrevious() {
+        return Files.exists(previousFile);
+    }
+
+    /**
+     * Deletes the previous journal, once a snapshot holds everything that was in it.
+     */
+    void dropPrevious() throws IOException {
+        Files.deleteIfExists(previousFile);
+    }
+
+    /**
+     * The number of records in the current file, which is what replaying it on the next start would cost.
+     */
+    long recordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (!open) return;
+            open = false;
+            queue.add(PendingAppend.CLOSE);
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    private void writeLoop() {
+        List<PendingAppend> batch = new ArrayList<>();
+        boolean closing = false;
+        while (!closing) {
+            batch.add(takeUninterruptibly());
+            queue.drainTo(batch, MAX_BATCH);
+            closing = batch.remove(PendingAppend.CLOSE);
+
+            // records are written up to a rotation, then the rotation happens and the rest go to the new file
+            int start = 0;
+            try {
+                for (int i = 0; i <= batch.size(); i++) {
+                    if (i < batch.size() && !batch.get(i).isRotation()) continue;
+                    writeBatch(batch.subList(start, i));
+                    if (i < batch.size()) rotateNow(batch.get(i));
+                    start = i + 1;
+                }
+            } catch (RuntimeException | Error e) {
+                fail(e instanceof RuntimeException ? (RuntimeException) e : new IllegalStateException("Journal " + file + " failed", e));
+                // the writer carries on, failing what is queued, so that no caller waits forever
+                batch.forEach(pending -> pending.done.completeExceptionally(failure));
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Stops the journal taking any more records, because the file can no longer be trusted to hold them.
+     */
+    private void fail(RuntimeException cause) {
+        if (failure == null) failure = cause;
+    }
+
+    private PendingAppend takeUninterruptibly() {
+        while (true) {
+            try {
+                return queue.take();
+            } catch (InterruptedException e) {
+                // only close() stops the writer, so that a write is never cut short
+            }
+        }
+    }
+
+    private void writeBatch(List<PendingAppend> batch) {
+        if (batch.isEmpty()) return;
+        if (failure != null) {
+            batch.forEach(pending -> pending.done.completeExceptionally(failure));
+            return;
+        }
+        ByteBuffer[] buffers = new ByteBuffer[batch.size() * 2];
+        for (int i = 0; i < batch.size(); i++) {
+            ByteBuffer payload = batch.get(i).record;
+            buffers[2 * i] = frameHeader(payload);
+            buffers[2 * i + 1] = payload;
+        }
+        long batchStart = -1;
+        try {
+            batchStart = channel.position();
+            long remaining = 0;
+            for (ByteBuffer buffer : buffers) remaining += buffer.remaining();
+            while (remaining > 0) remaining -= channel.write(buffers);
+            channel.force(false);
+            recordCount += batch.size();
+            batch.forEach(pending -> pending.done.complete(null));
+        } catch (IOException e) {
+            UncheckedIOException notWritten = new UncheckedIOException("Could not write to journal " + file, e);
+            batch.forEach(pending -> pending.done.completeExceptionally(notWritten));
+            cutOffTornBatch(batchStart, notWritten);
+        }
+    }
+
+    // replay stops at the first torn frame, so anything written after one would be acknowledged and then lost
+    private void cutOffTornBatch(long batchStart, UncheckedIOException notWritten) {
+        if (batchStart < 0) {
+            fail(notWritten);
+            return;
+        }
+        try {
+            channel.truncate(batchStart);
+            channel.position(batchStart);
+            channel.force(false);
+        } catch (IOException e) {
+            notWritten.addSuppressed(e);
+            fail(notWritten);
+        }
+    }
+
+    private void rotateNow(PendingAppend rotation) {
+        if (failure != null) {
+            rotation.done.completeExceptionally(failure);
+            return;
+        }
+        if (Files.exists(previousFile)) {
+            rotation.done.completeExceptionally(new IllegalStateException("Previous journal " + previousFile + " has not been dropped yet"));
+            return;
+        }
+        try {
+            channel.close();
+            Files.move(file, previousFile, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            writeHeader(channel);
+            recordCount = 0;
+            rotation.done.complete(null);
+        } catch (IOException e) {
+            rotation.done.completeExceptionally(new UncheckedIOException("Could not rotate journal " + file, e));
+            reopenAfterFailedRotation();
+        }
+    }
+
+    private void reopenAfterFailedRotation() {
+        try {
+            if (!Files.exists(file) && Files.exists(previousFile)) Files.move(previousFile, file, StandardCopyOption.ATOMIC_MOVE);
+            if (!channel.isOpen()) channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() < HEADER_SIZE) writeHeader(channel);
+            channel.position(channel.size());
+        } catch (IOException e) {
+            fail(new UncheckedIOException("Could not reopen journal " + file, e));
+        }
+    }
+
+    private static long replay(FileChannel channel, Path file, Consumer<ByteBuffer> replay) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            channel.truncate(0);
+            writeHeader(channel);
+            return 0;
+        }
+        checkHeader(channel, file);
+        long recordCount = 0;
+        long position = HEADER_SIZE;
+        ByteBuffer frameHeader = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+        while (true) {
+            ByteBuffer payload = readFrame(channel, position, frameHeader);
+            if (payload == null) break;
+            replay.accept(payload);
+            position += FRAME_HEADER_SIZE + payload.capacity();
+            recordCount++;
+        }
+        channel.truncate(position);
+        channel.position(position);
+        return recordCount;
+    }
+
+    private static ByteBuffer frameHeader(ByteBuffer payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        return ByteBuffer.allocate(FRAME_HEADER_SIZE)
+                .putInt(payload.remaining())
+                .putInt((int) crc.getValue())
+                .flip();
+    }
+
+    private static ByteBuffer readFrame(FileChannel channel, long position, ByteBuffer frameHeader) throws IOException {
+        frameHeader.clear();
+        if (!readFully(channel, frameHeader, position)) return null;
+        int length = frameHeader.getInt(0);
+        int expectedCrc = frameHeader.getInt(4);
+        if (length <= 0 || position + FRAME_HEADER_SIZE + length > channel.size()) return null;
+
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        if (!readFully(channel, payload, position + FRAME_HEADER_SIZE)) return null;
+        payload.flip();
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue() == expectedCrc ? payload : null;
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) return false;
+        }
+        return true;
+    }
+
+    private static void writeHeader(FileChannel channel) throws IOException {
+        channel.write(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).flip(), 0);
+        channel.force(true);
+        channel.position(HEADER_SIZE);
+    }
+
+    private static void checkHeader(FileChannel channel, Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (!readFully(channel, header, 0) || header.getInt(0) != MAGIC)
+            throw new IOException(file + " is not a journal");
+    }
+
+    private static Path previousFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".previous");
+    }
+
+    private static class PendingAppend {
+        private static final PendingAppend CLOSE = new PendingAppend(ByteBuffer.allocate(0));
+
+        private final ByteBuffer record;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private PendingAppend(ByteBuffer record) {
+            this.record = record;
+        }
+
+        private boolean isRotation() {
+            return record == null;
+        }
+    }
+}
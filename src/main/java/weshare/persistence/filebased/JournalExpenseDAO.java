@@ -0,0 +1,44 @@
+package weshare.persistence.filebased;
+
+import weshare.model.Expense;
+import weshare.persistence.ExpenseDAO;
+import weshare.persistence.ForwardingExpenseDAO;
+import weshare.persistence.collectionbased.ExpenseDAOImpl;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An {@link ExpenseDAO} that survives restarts. Queries are answered from an in-memory {@link ExpenseDAOImpl}, and
+ * every save is also appended to the {@link Journal} before it returns.
+ * <p>
+ * Payment requests live inside their expense, so an expense has to be saved again after one of its payment requests
+ * is paid for the payment to be journaled.
+ */
+public class JournalExpenseDAO extends ForwardingExpenseDAO {
+    private final ExpenseDAO store;
+    private final Journal journal;
+
+    JournalExpenseDAO(Map<UUID, Expense> expenses, Journal journal) {
+        this.store = new ExpenseDAOImpl(expenses);
+        this.journal = journal;
+    }
+
+    @Override
+    protected ExpenseDAO delegate() {
+        return store;
+    }
+
+    @Override
+    public Expense save(Expense expense) {
+        CompletableFuture<Void> written;
+        // records for the same expense must reach the journal in the order their state was captured
+        synchronized (expense) {
+            store.save(expense);
+            written = journal.append(JournalRecords.encode(expense));
+        }
+        Journal.await(written);
+        return expense;
+    }
+}
@@ -0,0 +1,50 @@
+package weshare.persistence.filebased;
+
+import weshare.model.Person;
+import weshare.persistence.PersonDAO;
+import weshare.persistence.collectionbased.PersonDAOImpl;
+
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * A {@link PersonDAO} that survives restarts. Lookups are answered by an in-memory {@link PersonDAOImpl}, and the first
+ * time someone is saved they are also appended to the {@link Journal}.
+ */
+public class JournalPersonDAO implements PersonDAO {
+    private final PersonDAO store;
+    private final Collection<Person> people;
+    private final Journal journal;
+
+    /**
+     * @param people everyone known so far; new people are added to it as they are saved
+     */
+    JournalPersonDAO(Collection<Person> people, Journal journal) {
+        this.store = new PersonDAOImpl(people);
+        this.people = people;
+        this.journal = journal;
+    }
+
+    @Override
+    public Optional<Person> findPersonByEmail(String email) {
+        return store.findPersonByEmail(email);
+    }
+
+    @Override
+    public Person savePerson(Person person) {
+        Optional<Person> existing = store.findPersonByEmail(person.getEmail());
+        if (existing.isPresent()) return existing.get();
+
+        Person saved = store.savePerson(person);
+        if (saved == person) {
+            people.add(person);
+            Journal.await(journal.append(JournalRecords.encode(person)));
+        }
+        return saved;
+    }
+
+    @Override
+    public long countPeople() {
+        return store.countPeople();
+    }
+}
@@ -0,0 +1,161 @@
+package weshare.persistence.filebased;
+
+import org.javamoney.moneta.Money;
+import weshare.model.Expense;
+import weshare.model.Payment;
+import weshare.model.PaymentRequest;
+import weshare.model.Person;
+
+import javax.money.MonetaryAmount;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Binary encoding of the records in a {@link Journal}. An expense record always carries the whole expense together with
+ * all of its payment requests, so the last record written for an expense id is its current state. A person record
+ * carries the person's email address.
+ */
+final class JournalRecords {
+    static final byte EXPENSE = 1;
+    static final byte PERSON = 2;
+
+    /*
+     * How a payment request's state is written, here and in a Snapshot. Only the payment date is recorded, since the
+     * person who pays is always the person who was asked to.
+     */
+    static final byte UNPAID = 0;
+    static final byte PAID = 1;
+
+    private JournalRecords() {
+    }
+
+    static byte typeOf(ByteBuffer record) {
+        return record.get(record.position());
+    }
+
+    static ByteBuffer encode(Person person) {
+        byte[] email = utf8(person.getEmail());
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + email.length);
+        buffer.put(PERSON);
+        putBytes(buffer, email);
+        return buffer.flip();
+    }
+
+    static Person decodePerson(ByteBuffer buffer) {
+        byte type = buffer.get();
+        if (type != PERSON) throw new IllegalArgumentException("Not a person record: " + type);
+        return Person.of(getString(buffer));
+    }
+
+    static ByteBuffer encode(Expense expense) {
+        Collection<PaymentRequest> paymentRequests = expense.listOfPaymentRequests();
+        byte[] owner = utf8(expense.getPerson().getEmail());
+        byte[] description = utf8(expense.getDescription());
+        byte[] currency = utf8(expense.getAmount().getCurrency().getCurrencyCode());
+        byte[] amount = utf8(decimal(expense.getAmount()).toPlainString());
+
+        byte[][] debtors = new byte[paymentRequests.size()][];
+        byte[][] amounts = new byte[paymentRequests.size()][];
+        Payment[] payments = new Payment[paymentRequests.size()];
+        int size = 1 + 16 + 4 + owner.length + 4 + description.length + 4 + currency.length + 4 + amount.length + 8 + 4;
+        int i = 0;
+        for (PaymentRequest paymentRequest : paymentRequests) {
+            debtors[i] = utf8(paymentRequest.getPersonWhoShouldPayBack().getEmail());
+            amounts[i] = utf8(decimal(paymentRequest.getAmountToPay()).toPlainString());
+            payments[i] = paymentRequest.getPayment().orElse(null);
+            size += 16 + 4 + debtors[i].length + 4 + amounts[i].length + 8 + 1 + (payments[i] == null ? 0 : 8);
+            i++;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(EXPENSE);
+        putId(buffer, expense.getId());
+        putBytes(buffer, owner);
+        putBytes(buffer, description);
+        putBytes(buffer, currency);
+        putBytes(buffer, amount);
+        buffer.putLong(expense.getDate().toEpochDay());
+        buffer.putInt(paymentRequests.size());
+        i = 0;
+        for (PaymentRequest paymentRequest : paymentRequests) {
+            putId(buffer, paymentRequest.getId());
+            putBytes(buffer, debtors[i]);
+            putBytes(buffer, amounts[i]);
+            buffer.putLong(paymentRequest.getDueDate().toEpochDay());
+            if (payments[i] == null) {
+                buffer.put(UNPAID);
+            } else {
+                buffer.put(PAID);
+                buffer.putLong(payments[i].getPaymentDate().toEpochDay());
+            }
+            i++;
+        }
+        return buffer.flip();
+    }
+
+    static Expense decodeExpense(ByteBuffer buffer) {
+        byte type = buffer.get();
+        if (type != EXPENSE) throw new IllegalArgumentException("Not an expense record: " + type);
+
+        UUID id = getId(buffer);
+        Person owner = Person.of(getString(buffer));
+        String description = getString(buffer);
+        String currency = getString(buffer);
+        MonetaryAmount amount = Money.of(new BigDecimal(getString(buffer)), currency);
+        LocalDate date = LocalDate.ofEpochDay(buffer.getLong());
+        Expense expense = new Expense(id, owner, description, amount, date);
+
+        int paymentRequests = buffer.getInt();
+        for (int i = 0; i < paymentRequests; i++) {
+            UUID paymentRequestId = getId(buffer);
+            Person debtor = Person.of(getString(buffer));
+            MonetaryAmount amountToPay = Money.of(new BigDecimal(getString(buffer)), currency);
+            LocalDate dueDate = LocalDate.ofEpochDay(buffer.getLong());
+            byte state = buffer.get();
+
+            PaymentRequest paymentRequest = expense.requestPayment(paymentRequestId, debtor, amountToPay, dueDate);
+            if (state == PAID) paymentRequest.pay(debtor, LocalDate.ofEpochDay(buffer.getLong()));
+            else checkUnpaid(state);
+        }
+        return expense;
+    }
+
+    /**
+     * Fails on a state that is neither paid nor unpaid, rather than guessing at what was meant.
+     */
+    static void checkUnpaid(byte state) {
+        if (state != UNPAID) throw new IllegalArgumentException("Unknown payment request state: " + state);
+    }
+
+    private static BigDecimal decimal(MonetaryAmount amount) {
+        return amount.getNumber().numberValue(BigDecimal.class);
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putId(ByteBuffer buffer, UUID id) {
+        buffer.putLong(id.getMostSignificantBits());
+        buffer.putLong(id.getLeastSignificantBits());
+    }
+
+    private static UUID getId(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
@@ -0,0 +1,253 @@
+package weshare.persistence.filebased;
+
+import org.javamoney.moneta.Money;
+import weshare.model.Expense;
+import weshare.model.Payment;
+import weshare.model.PaymentRequest;
+import weshare.model.Person;
+
+import javax.money.MonetaryAmount;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/**
+ * A compact binary image of every person and expense, used so that a restart does not have to replay a long journal.
+ * <p>
+ * People are written once, in a table at the start of the file, and expenses and payment requests refer to them by
+ * their position in that table. That keeps the file small and means every email address is validated only once when
+ * the snapshot is loaded. The whole file is covered by a trailing checksum and is loaded through a
+ * {@link MappedByteBuffer}, so reading it does not copy it through the heap first.
+ */
+final class Snapshot {
+    private static final int MAGIC = 0x57535331; // "WSS1"
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final List<Person> people;
+    private final List<Expense> expenses;
+
+    private Snapshot(List<Person> people, List<Expense> expenses) {
+        this.people = people;
+        this.expenses = expenses;
+    }
+
+    /**
+     * The people that were registered when the snapshot was taken.
+     */
+    List<Person> people() {
+        return people;
+    }
+
+    List<Expense> expenses() {
+        return expenses;
+    }
+
+    /**
+     * Writes a snapshot next to {@code file} and then moves it into place, so a crash part way through leaves the
+     * previous snapshot untouched.
+     */
+    static void write(Path file, Collection<Person> people, Collection<Expense> expenses) throws IOException {
+        Map<Person, Integer> personIndex = new LinkedHashMap<>();
+        people.forEach(person -> personIndex.putIfAbsent(person, personIndex.size()));
+        int registered = personIndex.size();
+        // the payment requests are captured along with the expense so that every debtor is in the person table; the
+        // list is an immutable snapshot, so a request added later is neither written nor missing from the table
+        List<Expense> toWrite = new ArrayList<>(expenses.size());
+        List<Collection<PaymentRequest>> paymentRequestsToWrite = new ArrayList<>(expenses.size());
+        for (Expense expense : expenses) {
+            Collection<PaymentRequest> paymentRequests = expense.listOfPaymentRequests();
+            toWrite.add(expense);
+            paymentRequestsToWrite.add(paymentRequests);
+            personIndex.putIfAbsent(expense.getPerson(), personIndex.size());
+            paymentRequests.forEach(pr -> personIndex.putIfAbsent(pr.getPersonWhoShouldPayBack(), personIndex.size()));
+        }
+
+        Path written = file.resolveSibling(file.getFileName() + ".writing");
+        try (FileChannel channel = FileChannel.open(written, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            out.ensure(4 + 4 + 8 + 4);
+            out.buffer.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis()).putInt(personIndex.size());
+            int i = 0;
+            for (Person person : personIndex.keySet()) {
+                out.putString(person.getEmail());
+                out.ensure(1);
+                out.buffer.put((byte) (i++ < registered ? 1 : 0));
+            }
+
+            out.ensure(4);
+            out.buffer.putInt(toWrite.size());
+            for (int j = 0; j < toWrite.size(); j++) {
+                writeExpense(out, toWrite.get(j), paymentRequestsToWrite.get(j), personIndex);
+            }
+            out.finish();
+            channel.force(true);
+        }
+        Files.move(written, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Maps the snapshot into memory and rebuilds the people and expenses in it.
+     */
+    static Snapshot load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Snapshot " + file + " is too large to map");
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            checkIntegrity(buffer, file);
+
+            buffer.getLong(); // when it was taken
+            Person[] personTable = new Person[buffer.getInt()];
+            List<Person> people = new ArrayList<>();
+            for (int i = 0; i < personTable.length; i++) {
+                personTable[i] = Person.of(getString(buffer));
+                if (buffer.get() == 1) people.add(personTable[i]);
+            }
+
+            int expenseCount = buffer.getInt();
+            List<Expense> expenses = new ArrayList<>(expenseCount);
+            for (int i = 0; i < expenseCount; i++) expenses.add(readExpense(buffer, personTable));
+            return new Snapshot(people, expenses);
+        }
+    }
+
+    private static void checkIntegrity(ByteBuffer buffer, Path file) throws IOException {
+        if (buffer.limit() < 4 + 4 + 4 || buffer.getInt(0) != MAGIC) throw new IOException(file + " is not a snapshot");
+        if (buffer.getInt(4) != VERSION) throw new IOException("Snapshot " + file + " has unsupported version " + buffer.getInt(4));
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate().limit(buffer.limit() - 4));
+        if ((int) crc.getValue() != buffer.getInt(buffer.limit() - 4)) throw new IOException("Snapshot " + file + " is corrupt");
+        buffer.position(8);
+    }
+
+    private static void writeExpense(Output out, Expense expense, Collection<PaymentRequest> paymentRequests, Map<Person, Integer> personIndex) throws IOException {
+        out.ensure(16 + 4);
+        putId(out.buffer, expense.getId());
+        out.buffer.putInt(personIndex.get(expense.getPerson()));
+        out.putString(expense.getDescription());
+        out.putString(expense.getAmount().getCurrency().getCurrencyCode());
+        out.ensure(12 + 4 + 4);
+        putAmount(out.buffer, expense.getAmount());
+        out.buffer.putInt((int) expense.getDate().toEpochDay());
+        out.buffer.putInt(paymentRequests.size());
+        for (PaymentRequest paymentRequest : paymentRequests) {
+            out.ensure(16 + 4 + 12 + 4 + 1 + 4);
+            putId(out.buffer, paymentRequest.getId());
+            out.buffer.putInt(personIndex.get(paymentRequest.getPersonWhoShouldPayBack()));
+            putAmount(out.buffer, paymentRequest.getAmountToPay());
+            out.buffer.putInt((int) paymentRequest.getDueDate().toEpochDay());
+            Payment payment = paymentRequest.getPayment().orElse(null);
+            if (payment == null) {
+                out.buffer.put(JournalRecords.UNPAID);
+            } else {
+                out.buffer.put(JournalRecords.PAID);
+                out.buffer.putInt((int) payment.getPaymentDate().toEpochDay());
+            }
+        }
+    }
+
+    private static Expense readExpense(ByteBuffer buffer, Person[] personTable) {
+        UUID id = getId(buffer);
+        Person owner = personTable[buffer.getInt()];
+        String description = getString(buffer);
+        String currency = getString(buffer);
+        MonetaryAmount amount = getAmount(buffer, currency);
+        LocalDate date = LocalDate.ofEpochDay(buffer.getInt());
+        Expense expense = new Expense(id, owner, description, amount, date);
+
+        int paymentRequests = buffer.getInt();
+        for (int i = 0; i < paymentRequests; i++) {
+            UUID paymentRequestId = getId(buffer);
+            Person debtor = personTable[buffer.getInt()];
+            MonetaryAmount amountToPay = getAmount(buffer, currency);
+            LocalDate dueDate = LocalDate.ofEpochDay(buffer.getInt());
+            byte state = buffer.get();
+
+            PaymentRequest paymentRequest = expense.requestPayment(paymentRequestId, debtor, amountToPay, dueDate);
+            if (state == JournalRecords.PAID) paymentRequest.pay(debtor, LocalDate.ofEpochDay(buffer.getInt()));
+            else JournalRecords.checkUnpaid(state);
+        }
+        return expense;
+    }
+
+    private static void putAmount(ByteBuffer buffer, MonetaryAmount amount) {
+        BigDecimal number = amount.getNumber().numberValue(BigDecimal.class);
+        buffer.putLong(number.unscaledValue().longValueExact());
+        buffer.putInt(number.scale());
+    }
+
+    private static MonetaryAmount getAmount(ByteBuffer buffer, String currency) {
+        long unscaled = buffer.getLong();
+        int scale = buffer.getInt();
+        return Money.of(new BigDecimal(BigInteger.valueOf(unscaled), scale), currency);
+    }
+
+    private static void putId(ByteBuffer buffer, UUID id) {
+        buffer.putLong(id.getMostSignificantBits());
+        buffer.putLong(id.getLeastSignificantBits());
+    }
+
+    private static UUID getId(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Buffers what is written and flushes it to the channel a megabyte at a time, keeping a running checksum.
+     */
+    private static class Output {
+        private final FileChannel channel;
+        private final CRC32C crc = new CRC32C();
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        private Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) return;
+            flush();
+            if (buffer.capacity() < bytes) buffer = ByteBuffer.allocateDirect(bytes);
+        }
+
+        private void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensure(4 + bytes.length);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+
+        private void finish() throws IOException {
+            flush();
+            buffer.putInt((int) crc.getValue()).flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package weshare.persistence.summary;
+
+import weshare.model.Expense;
+import weshare.model.Person;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link PersonSummary} for everyone who owns an expense, kept up to date as expenses are saved.
+ * <p>
+ * What each expense last contributed is remembered, so saving it again only applies the difference to its owner's
+ * summary. Reading a summary is a single map lookup, however many expenses the person has.
+ */
+public class ExpenseSummaries {
+    private final Map<UUID, Contribution> contributions = new ConcurrentHashMap<>();
+    private final Map<Person, PersonSummary> summaries = new ConcurrentHashMap<>();
+
+    public PersonSummary summaryFor(Person person) {
+        return summaries.getOrDefault(person, PersonSummary.EMPTY);
+    }
+
+    /**
+     * Brings the owner's summary up to date with the expense as it is now.
+     */
+    public void update(Expense expense) {
+        // saves of the same expense take turns here, so every difference is applied exactly once
+        contributions.compute(expense.getId(), (id, previous) -> {
+            Contribution current = new Contribution(expense.getPerson(), PersonSummary.of(expense));
+            if (previous != null) summaries.merge(previous.owner, previous.summary, PersonSummary::minus);
+            summaries.merge(current.owner, current.summary, PersonSummary::plus);
+            return current;
+        });
+    }
+
+    private static class Contribution {
+        private final Person owner;
+        private final PersonSummary summary;
+
+        private Contribution(Person owner, PersonSummary summary) {
+            this.owner = owner;
+            this.summary = summary;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package weshare.persistence.summary;
+
+import com.google.common.base.MoreObjects;
+import weshare.model.Expense;
+import weshare.model.PaymentRequest;
+
+/**
+ * What the expenses page shows about a person as a whole: their open expenses, i.e. those not yet fully paid back by
+ * others, and how much they asked for and got back across all their expenses. Amounts are in cents.
+ */
+public final class PersonSummary {
+    public static final PersonSummary EMPTY = new PersonSummary(0, 0, 0, 0, 0);
+
+    private final int openExpenses;
+    private final long openCents;
+    private final int unpaidRequests;
+    private final long requestedCents;
+    private final long receivedCents;
+
+    private PersonSummary(int openExpenses, long openCents, int unpaidRequests, long requestedCents, long receivedCents) {
+        this.openExpenses = openExpenses;
+        this.openCents = openCents;
+        this.unpaidRequests = unpaidRequests;
+        this.requestedCents = requestedCents;
+        this.receivedCents = receivedCents;
+    }
+
+    /**
+     * What a single expense adds to its owner's summary.
+     */
+    static PersonSummary of(Expense expense) {
+        boolean open = !expense.isFullyPaidByOthers();
+        int unpaid = 0;
+        for (PaymentRequest paymentRequest : expense.listOfPaymentRequests()) {
+            if (!paymentRequest.isPaid()) unpaid++;
+        }
+        return new PersonSummary(open ? 1 : 0, open ? expense.getAmountInCents() : 0, unpaid,
+                expense.totalCentsOfPaymentsRequested(), expense.totalCentsForPaymentsReceived());
+    }
+
+    PersonSummary plus(PersonSummary other) {
+        return new PersonSummary(openExpenses + other.openExpenses, Math.addExact(openCents, other.openCents),
+                unpaidRequests + other.unpaidRequests, Math.addExact(requestedCents, other.requestedCents),
+                Math.addExact(receivedCents, other.receivedCents));
+    }
+
+    PersonSummary minus(PersonSummary other) {
+        return new PersonSummary(openExpenses - other.openExpenses, Math.subtractExact(openCents, other.openCents),
+                unpaidRequests - other.unpaidRequests, Math.subtractExact(requestedCents, other.requestedCents),
+                Math.subtractExact(receivedCents, other.receivedCents));
+    }
+
+    public int getOpenExpenses() {
+        return openExpenses;
+    }
+
+    public long getOpenCents() {
+        return openCents;
+    }
+
+    public int getUnpaidRequests() {
+        return unpaidRequests;
+    }
+
+    public boolean hasUnpaidRequests() {
+        return unpaidRequests > 0;
+    }
+
+    public long getRequestedCents() {
+        return requestedCents;
+    }
+
+    public long getReceivedCents() {
+        return receivedCents;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("openExpenses", openExpenses)
+                .add("openCents", openCents)
+                .add("unpaidRequests", unpaidRequests)
+                .add("requestedCents", requestedCents)
+                .add("receivedCents", receivedCents)
+                .toString();
+    }
+}
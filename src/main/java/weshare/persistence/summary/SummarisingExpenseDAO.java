@@ -0,0 +1,35 @@
+package weshare.persistence.summary;
+
+import weshare.model.Expense;
+import weshare.persistence.ExpenseDAO;
+import weshare.persistence.ForwardingExpenseDAO;
+
+/**
+ * An {@link ExpenseDAO} that keeps {@link ExpenseSummaries} up to date with every expense that is saved. Payments are
+ * picked up when the paid expense is saved again.
+ */
+public class SummarisingExpenseDAO extends ForwardingExpenseDAO {
+    private final ExpenseDAO delegate;
+    private final ExpenseSummaries summaries;
+
+    /**
+     * @param existing the expenses the delegate already holds, which are summarised straight away
+     */
+    public SummarisingExpenseDAO(ExpenseDAO delegate, ExpenseSummaries summaries, Iterable<Expense> existing) {
+        this.delegate = delegate;
+        this.summaries = summaries;
+        existing.forEach(summaries::update);
+    }
+
+    @Override
+    protected ExpenseDAO delegate() {
+        return delegate;
+    }
+
+    @Override
+    public Expense save(Expense expense) {
+        Expense saved = delegate.save(expense);
+        summaries.update(saved);
+        return saved;
+    }
+}
@@ -0,0 +1,111 @@
+package weshare.persistence.versions;
+
+import com.google.common.base.MoreObjects;
+import weshare.model.Expense;
+import weshare.model.PaymentRequest;
+import weshare.model.Person;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Version numbers for what each person sees and for each expense, moved on whenever an expense is saved, so that a page
+ * can tell whether anything it shows has changed without looking at the data itself.
+ * <p>
+ * Saving an expense changes the version of the expense, of its owner, and of everyone it asks to pay. Every change
+ * takes the next number from one counter, so a number is never reused for different data. Versions only live in
+ * memory, so each one also carries the epoch at which this instance was created, which changes on every restart.
+ */
+public class DataVersions {
+    private final long epoch;
+    private final Version initial;
+    private final LongSupplier clock;
+    private final AtomicLong counter = new AtomicLong();
+    private final Map<Person, Version> personVersions = new ConcurrentHashMap<>();
+    private final Map<UUID, Version> expenseVersions = new ConcurrentHashMap<>();
+
+    public DataVersions() {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock the time in epoch milliseconds, used for the epoch and for when data was modified
+     */
+    public DataVersions(LongSupplier clock) {
+        this.clock = clock;
+        this.epoch = clock.getAsLong();
+        this.initial = new Version(epoch, 0, epoch);
+    }
+
+    /**
+     * The version of everything the person sees: their expenses and the payment requests they sent and received.
+     */
+    public Version forPerson(Person person) {
+        return personVersions.getOrDefault(person, initial);
+    }
+
+    public Version forExpense(UUID expenseId) {
+        return expenseVersions.getOrDefault(expenseId, initial);
+    }
+
+    /**
+     * Moves on the versions of everything that shows the expense.
+     */
+    public void changed(Expense expense) {
+        Version next = new Version(epoch, counter.incrementAndGet(), clock.getAsLong());
+        expenseVersions.merge(expense.getId(), next, Version::later);
+        personVersions.merge(expense.getPerson(), next, Version::later);
+        for (PaymentRequest paymentRequest : expense.listOfPaymentRequests()) {
+            personVersions.merge(paymentRequest.getPersonWhoShouldPayBack(), next, Version::later);
+        }
+    }
+
+    /**
+     * A point in the history of some data.
+     */
+    public static final class Version {
+        private final long epoch;
+        private final long number;
+        private final long modifiedAt;
+
+        private Version(long epoch, long number, long modifiedAt) {
+            this.epoch = epoch;
+            this.number = number;
+            this.modifiedAt = modifiedAt;
+        }
+
+        private static Version later(Version one, Version other) {
+            return one.number >= other.number ? one : other;
+        }
+
+        /**
+         * Identifies this version across restarts, e.g. {@code kx2b1f3c-42}.
+         */
+        public String tag() {
+            return Long.toString(epoch, 36) + "-" + number;
+        }
+
+        public long getNumber() {
+            return number;
+        }
+
+        /**
+         * When the data last changed, in epoch milliseconds, or when this instance was created if it never has.
+         */
+        public long getModifiedAt() {
+            return modifiedAt;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("epoch", epoch)
+                    .add("number", number)
+                    .add("modifiedAt", modifiedAt)
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package weshare.persistence.versions;
+
+import weshare.model.Expense;
+import weshare.persistence.ExpenseDAO;
+import weshare.persistence.ForwardingExpenseDAO;
+
+/**
+ * An {@link ExpenseDAO} that moves on the {@link DataVersions} of an expense once it has been saved.
+ * <p>
+ * The versions move only after the save, so anyone who sees the new version is sure to also see the new data.
+ */
+public class VersioningExpenseDAO extends ForwardingExpenseDAO {
+    private final ExpenseDAO delegate;
+    private final DataVersions versions;
+
+    public VersioningExpenseDAO(ExpenseDAO delegate, DataVersions versions) {
+        this.delegate = delegate;
+        this.versions = versions;
+    }
+
+    @Override
+    protected ExpenseDAO delegate() {
+        return delegate;
+    }
+
+    @Override
+    public Expense save(Expense expense) {
+        Expense saved = delegate.save(expense);
+        versions.changed(saved);
+        return saved;
+    }
+}
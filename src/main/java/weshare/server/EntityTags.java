@@ -0,0 +1,29 @@
+package weshare.server;
+
+/**
+ * Compares the entity tags a browser sends back in {@code If-None-Match} with the current one.
+ */
+public final class EntityTags {
+    private static final String WEAK = "W/";
+
+    private EntityTags() {
+    }
+
+    /**
+     * Whether an {@code If-None-Match} header names the tag: it may be a list of tags, {@code *} for any, or weak tags,
+     * which for a conditional GET compare as if they were strong.
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        String strong = strong(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || strong(tag).equals(strong)) return true;
+        }
+        return false;
+    }
+
+    private static String strong(String tag) {
+        return tag.startsWith(WEAK) ? tag.substring(WEAK.length()) : tag;
+    }
+}
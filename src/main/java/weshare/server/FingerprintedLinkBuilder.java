@@ -0,0 +1,23 @@
+package weshare.server;
+
+import org.thymeleaf.context.IExpressionContext;
+import org.thymeleaf.linkbuilder.StandardLinkBuilder;
+
+/**
+ * Turns {@code @{/css/main.css}} links in templates into the fingerprinted names the {@link StaticAssets} serve them
+ * on. Any other link is built as usual.
+ */
+class FingerprintedLinkBuilder extends StandardLinkBuilder {
+    private final StaticAssets assets;
+
+    FingerprintedLinkBuilder(StaticAssets assets) {
+        this.assets = assets;
+    }
+
+    @Override
+    protected String processLink(IExpressionContext context, String link) {
+        String fingerprinted = assets.fingerprinted(link);
+        // assets are public, so their links never need a session id added
+        return fingerprinted.equals(link) ? super.processLink(context, link) : fingerprinted;
+    }
+}
@@ -0,0 +1,20 @@
+package weshare.server;
+
+import io.javalin.http.Context;
+import org.jetbrains.annotations.Nullable;
+import weshare.model.Person;
+
+/**
+ * Remembers who is logged in between requests.
+ */
+public interface LoginSessions {
+    /**
+     * Who sent the request, or null if nobody has logged in.
+     */
+    @Nullable
+    Person personLoggedIn(Context context);
+
+    void logIn(Context context, Person person);
+
+    void logOut(Context context);
+}
@@ -15,6 +15,7 @@ public class Routes {
     public static final String PAYMENT_RECEIVED = "/paymentrequests_received";
     public static final String PAYMENT_REQUEST = "/paymentrequest";
     public static final String SUBMIT_PAYMENT = "/payment.action";
+    public static final String METRICS = "/metrics";
 
 
     public static void configure(WeShareServer server) {
@@ -29,6 +30,7 @@ public class Routes {
             get(PAYMENT_REQUEST,    ExpensesController.payment_request);
             post(PAYMENT_RECEIVED ,    ExpensesController.send_payment);
             post(PAYMENT_REQUEST,   ExpensesController.send_request);
+            get(METRICS,            MetricsController.metrics);
         });
     }
 }
@@ -0,0 +1,25 @@
+package weshare.server;
+
+import io.javalin.http.Context;
+import weshare.model.Person;
+
+/**
+ * Keeps the person logged in in the servlet session, so requests from one browser have to reach the node that holds
+ * its session.
+ */
+class ServerSideSessions implements LoginSessions {
+    @Override
+    public Person personLoggedIn(Context context) {
+        return context.sessionAttribute(WeShareServer.SESSION_USER_KEY);
+    }
+
+    @Override
+    public void logIn(Context context, Person person) {
+        context.sessionAttribute(WeShareServer.SESSION_USER_KEY, person);
+    }
+
+    @Override
+    public void logOut(Context context) {
+        context.sessionAttribute(WeShareServer.SESSION_USER_KEY, null);
+    }
+}
@@ -0,0 +1,127 @@
+package weshare.server;
+
+import io.javalin.http.Context;
+import io.javalin.http.Cookie;
+import io.javalin.http.SameSite;
+import weshare.model.Person;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.function.Predicate;
+
+/**
+ * Keeps the person logged in in a cookie signed with HMAC-SHA256, so that nothing about a login is held on the server
+ * and any node that knows the secret can serve any request.
+ * <p>
+ * The cookie holds {@code email.expiry.signature}, with the email and signature base64url encoded and the expiry in
+ * epoch seconds, base 36. A cookie that has been tampered with or has expired is ignored. Since nothing is kept on the
+ * server, logging out only removes the cookie from the browser: a copy of it stays valid until it expires.
+ * <p>
+ * The cookie is marked {@code Secure}, so that the browser never sends it over plain HTTP, whenever the request came
+ * over HTTPS, either to this server or to a proxy in front of it that says so in {@code X-Forwarded-Proto}.
+ */
+class SignedCookieSessions implements LoginSessions {
+    static final String COOKIE = "weshare_session";
+    static final Duration LIFETIME = Duration.ofHours(12);
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_SECRET_BYTES = 32;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final Clock clock;
+    private final ThreadLocal<Mac> macs;
+    private final Predicate<Context> secure;
+
+    SignedCookieSessions(String secret) {
+        this(secret, Clock.systemUTC());
+    }
+
+    SignedCookieSessions(String secret, Clock clock) {
+        this(secret, clock, SignedCookieSessions::overHttps);
+    }
+
+    /**
+     * @param secure whether the cookie sent in answer to a request should be marked {@code Secure}
+     */
+    SignedCookieSessions(String secret, Clock clock, Predicate<Context> secure) {
+        byte[] bytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < MIN_SECRET_BYTES) {
+            throw new IllegalArgumentException("The session secret needs at least " + MIN_SECRET_BYTES + " bytes");
+        }
+        this.key = new SecretKeySpec(bytes, ALGORITHM);
+        this.clock = clock;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+        this.secure = secure;
+    }
+
+    static boolean overHttps(Context context) {
+        return context.req.isSecure() || "https".equalsIgnoreCase(context.header("X-Forwarded-Proto"));
+    }
+
+    @Override
+    public Person personLoggedIn(Context context) {
+        String token = context.cookie(COOKIE);
+        return token == null ? null : verify(token);
+    }
+
+    @Override
+    public void logIn(Context context, Person person) {
+        context.cookie(cookie(sign(person), (int) LIFETIME.toSeconds(), secure.test(context)));
+    }
+
+    @Override
+    public void logOut(Context context) {
+        context.cookie(cookie("", 0, secure.test(context)));
+    }
+
+    String sign(Person person) {
+        long expiresAt = clock.instant().plus(LIFETIME).getEpochSecond();
+        String payload = ENCODER.encodeToString(person.getEmail().getBytes(StandardCharsets.UTF_8))
+                + "." + Long.toString(expiresAt, 36);
+        return payload + "." + ENCODER.encodeToString(mac(payload));
+    }
+
+    /**
+     * @return the person the token was signed for, or null if it is not genuine or has expired
+     */
+    Person verify(String token) {
+        int lastDot = token.lastIndexOf('.');
+        int firstDot = token.indexOf('.');
+        if (firstDot < 0 || firstDot == lastDot) return null;
+        String payload = token.substring(0, lastDot);
+        try {
+            byte[] signature = DECODER.decode(token.substring(lastDot + 1));
+            if (!MessageDigest.isEqual(signature, mac(payload))) return null;
+            long expiresAt = Long.parseLong(token.substring(firstDot + 1, lastDot), 36);
+            if (clock.instant().getEpochSecond() >= expiresAt) return null;
+            return Person.of(new String(DECODER.decode(token.substring(0, firstDot)), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private byte[] mac(String payload) {
+        return macs.get().doFinal(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot sign sessions with " + ALGORITHM, e);
+        }
+    }
+
+    private static Cookie cookie(String value, int maxAge, boolean secure) {
+        return new Cookie(COOKIE, value, "/", maxAge, secure, 0, true, null, null, SameSite.LAX);
+    }
+}
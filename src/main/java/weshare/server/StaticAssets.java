@@ -0,0 +1,275 @@
+package weshare.server;
+
+import com.google.common.hash.Hashing;
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.HttpCode;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves the static files from a classpath directory out of memory.
+ * <p>
+ * Every file is read once, at startup, and compressed with gzip if that makes it smaller. Each file other than an HTML
+ * page is also served under a fingerprinted name with a hash of its content in it, e.g. {@code /css/main.1f0c9a2b.css},
+ * which browsers may keep for good because a change to the file changes its name. The plain names still work but have
+ * to be checked with the server each time. Links to other assets in the HTML pages are rewritten to the fingerprinted
+ * names as they are loaded, and templates get them through {@link #fingerprinted(String)}.
+ * <p>
+ * The gzipped and the plain body of a file are different bytes, so each has its own {@code ETag}, the gzipped one
+ * ending in {@code -gz}.
+ */
+public class StaticAssets implements Handler {
+    private static final String INDEX = "index.html";
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE = "no-cache";
+    private static final Pattern LINK = Pattern.compile("(href|src)=\"([^\"]+)\"");
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "html", "text/html; charset=utf-8",
+            "css", "text/css; charset=utf-8",
+            "js", "text/javascript; charset=utf-8",
+            "svg", "image/svg+xml",
+            "png", "image/png",
+            "ico", "image/x-icon",
+            "txt", "text/plain; charset=utf-8");
+
+    private final Map<String, Asset> assets;
+    private final Map<String, String> fingerprints;
+
+    private StaticAssets(Map<String, Asset> assets, Map<String, String> fingerprints) {
+        this.assets = assets;
+        this.fingerprints = fingerprints;
+    }
+
+    /**
+     * Loads every file below a directory on the classpath, whether it is on disk or inside a jar.
+     */
+    public static StaticAssets load(String classpathDir) {
+        URL url = StaticAssets.class.getResource(classpathDir);
+        if (url == null) throw new IllegalArgumentException("No directory " + classpathDir + " on the classpath");
+        try {
+            URI uri = url.toURI();
+            if (!uri.getScheme().equals("jar")) return load(Path.of(uri));
+            try (FileSystem jar = FileSystems.newFileSystem(uri, Map.of())) {
+                return load(jar.provider().getPath(uri));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load static files from " + classpathDir, e);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Cannot read static files from " + url, e);
+        }
+    }
+
+    static StaticAssets load(Path dir) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+
+        // pages link to the other files, so those are fingerprinted first
+        Map<String, Asset> assets = new HashMap<>();
+        Map<String, String> fingerprints = new HashMap<>();
+        List<Path> pages = new ArrayList<>();
+        for (Path file : files) {
+            if (extensionOf(file.toString()).equals("html")) {
+                pages.add(file);
+                continue;
+            }
+            String path = urlPath(dir, file);
+            Asset asset = Asset.of(Files.readAllBytes(file), contentTypeOf(path));
+            String fingerprinted = fingerprint(path, asset.hash);
+            assets.put(path, asset.revalidated());
+            assets.put(fingerprinted, asset);
+            fingerprints.put(path, fingerprinted);
+        }
+        for (Path page : pages) {
+            String path = urlPath(dir, page);
+            String html = rewriteLinks(Files.readString(page), path, fingerprints);
+            Asset asset = Asset.of(html.getBytes(StandardCharsets.UTF_8), contentTypeOf(path)).revalidated();
+            assets.put(path, asset);
+            if (path.endsWith("/" + INDEX)) assets.put(path.substring(0, path.length() - INDEX.length()), asset);
+        }
+        return new StaticAssets(Map.copyOf(assets), Map.copyOf(fingerprints));
+    }
+
+    /**
+     * Every URL path an asset is served on, so that each can be given a route.
+     */
+    public Set<String> paths() {
+        return Collections.unmodifiableSet(assets.keySet());
+    }
+
+    /**
+     * Static files are served to anyone, logged in or not.
+     */
+    public boolean isPublic(String path) {
+        return assets.containsKey(path);
+    }
+
+    /**
+     * The fingerprinted name to link to for an asset, or the path unchanged if it is not one.
+     */
+    public String fingerprinted(String path) {
+        return fingerprints.getOrDefault(path, path);
+    }
+
+    @Override
+    public void handle(@NotNull Context context) throws Exception {
+        Asset asset = assets.get(context.path());
+        if (asset == null) {
+            context.status(HttpCode.NOT_FOUND);
+            return;
+        }
+        boolean gzip = asset.gzipped != null && acceptsGzip(context.header("Accept-Encoding"));
+        String etag = gzip ? asset.gzippedEtag : asset.etag;
+        context.header("ETag", etag);
+        context.header("Cache-Control", asset.cacheControl);
+        context.header("Vary", "Accept-Encoding");
+        if (EntityTags.matches(context.header("If-None-Match"), etag)) {
+            context.status(HttpCode.NOT_MODIFIED);
+            return;
+        }
+
+        byte[] body = gzip ? asset.gzipped : asset.bytes;
+        context.contentType(asset.contentType);
+        // a response that already has a Content-Encoding is left alone by the server's own compression
+        if (gzip) context.header("Content-Encoding", "gzip");
+        context.res.setContentLength(body.length);
+        context.result(body);
+    }
+
+    /**
+     * Whether an {@code Accept-Encoding} header allows gzip, either by name or through {@code *}, with a quality above
+     * zero.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        Double gzip = null;
+        Double any = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            double quality = qualityOf(parts);
+            if (name.equals("gzip") || name.equals("x-gzip")) gzip = quality;
+            else if (name.equals("*")) any = quality;
+        }
+        if (gzip != null) return gzip > 0;
+        return any != null && any > 0;
+    }
+
+    private static double qualityOf(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (!parameter.regionMatches(true, 0, "q=", 0, 2)) continue;
+            try {
+                return Double.parseDouble(parameter.substring(2).trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 1;
+    }
+
+    private static String rewriteLinks(String html, String pagePath, Map<String, String> fingerprints) {
+        String pageDir = pagePath.substring(0, pagePath.lastIndexOf('/') + 1);
+        Matcher matcher = LINK.matcher(html);
+        StringBuilder rewritten = new StringBuilder();
+        while (matcher.find()) {
+            String link = matcher.group(2);
+            String target = link.startsWith("/") ? link : pageDir + link;
+            String fingerprinted = fingerprints.get(target);
+            String replacement = fingerprinted == null ? matcher.group() : matcher.group(1) + "=\"" + fingerprinted + "\"";
+            matcher.appendReplacement(rewritten, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(rewritten);
+        return rewritten.toString();
+    }
+
+    private static String urlPath(Path dir, Path file) {
+        StringBuilder path = new StringBuilder();
+        for (Path part : dir.relativize(file)) path.append('/').append(part);
+        return path.toString();
+    }
+
+    private static String fingerprint(String path, String hash) {
+        int dot = path.lastIndexOf('.');
+        if (dot <= path.lastIndexOf('/')) return path + "." + hash;
+        return path.substring(0, dot) + "." + hash + path.substring(dot);
+    }
+
+    private static String extensionOf(String path) {
+        int dot = path.lastIndexOf('.');
+        return dot < 0 ? "" : path.substring(dot + 1);
+    }
+
+    private static String contentTypeOf(String path) {
+        return CONTENT_TYPES.getOrDefault(extensionOf(path), "application/octet-stream");
+    }
+
+    private static final class Asset {
+        private final byte[] bytes;
+        private final byte[] gzipped;
+        private final String contentType;
+        private final String hash;
+        private final String etag;
+        private final String gzippedEtag;
+        private final String cacheControl;
+
+        private Asset(byte[] bytes, byte[] gzipped, String contentType, String hash, String cacheControl) {
+            this.bytes = bytes;
+            this.gzipped = gzipped;
+            this.contentType = contentType;
+            this.hash = hash;
+            this.etag = "\"" + hash + "\"";
+            this.gzippedEtag = "\"" + hash + "-gz\"";
+            this.cacheControl = cacheControl;
+        }
+
+        private static Asset of(byte[] bytes, String contentType) {
+            String hash = Hashing.sha256().hashBytes(bytes).toString().substring(0, 16);
+            byte[] gzipped = gzip(bytes);
+            return new Asset(bytes, gzipped.length < bytes.length ? gzipped : null, contentType, hash, IMMUTABLE);
+        }
+
+        /**
+         * The same content, under a name that does not change when the content does.
+         */
+        private Asset revalidated() {
+            return new Asset(bytes, gzipped, contentType, hash, REVALIDATE);
+        }
+
+        private static byte[] gzip(byte[] bytes) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length);
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed) {{ def.setLevel(Deflater.BEST_COMPRESSION); }}) {
+                out.write(bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return compressed.toByteArray();
+        }
+    }
+}
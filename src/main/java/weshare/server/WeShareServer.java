@@ -6,14 +6,19 @@ package weshare.server;
 
 import io.javalin.Javalin;
 import io.javalin.apibuilder.EndpointGroup;
+import io.javalin.core.compression.CompressionStrategy;
 import io.javalin.core.security.AccessManager;
 import io.javalin.core.security.RouteRole;
 import io.javalin.http.Context;
 import io.javalin.http.Handler;
-import io.javalin.http.staticfiles.Location;
+import io.javalin.http.HttpCode;
+import io.javalin.plugin.rendering.JavalinRenderer;
 import io.javalin.plugin.rendering.template.JavalinThymeleaf;
 import nz.net.ultraq.thymeleaf.layoutdialect.LayoutDialect;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
 import org.eclipse.jetty.server.session.DefaultSessionCache;
+import org.eclipse.jetty.server.session.NullSessionCache;
 import org.eclipse.jetty.server.session.NullSessionDataStore;
 import org.eclipse.jetty.server.session.SessionCache;
 import org.eclipse.jetty.server.session.SessionHandler;
@@ -21,18 +26,43 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+import weshare.controller.PageCache;
 import weshare.model.Expense;
 import weshare.model.Person;
 import weshare.persistence.ExpenseDAO;
 import weshare.persistence.PersonDAO;
+import weshare.persistence.analytics.ColumnarExpenseDAO;
+import weshare.persistence.analytics.ExpenseColumns;
+import weshare.persistence.summary.ExpenseSummaries;
+import weshare.persistence.summary.SummarisingExpenseDAO;
 import weshare.persistence.collectionbased.ExpenseDAOImpl;
 import weshare.persistence.collectionbased.PersonDAOImpl;
+import weshare.persistence.collectionbased.ShardedExpenseDAO;
+import weshare.persistence.filebased.FileBasedStore;
+import weshare.persistence.versions.DataVersions;
+import weshare.persistence.versions.VersioningExpenseDAO;
+import weshare.server.metrics.Metrics;
+import weshare.server.metrics.ScrapeAccess;
+import weshare.server.events.RecordingExpenseDAO;
+import weshare.server.events.RecordingFileRenderer;
+import weshare.server.metrics.TimedFileRenderer;
+import weshare.server.timing.RequestTimer;
+import weshare.server.timing.RequestTiming;
+import weshare.server.timing.TimedExpenseDAO;
+import weshare.server.timing.TimedPersonDAO;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
@@ -42,53 +72,226 @@ import static weshare.model.MoneyHelper.amountOf;
 
 public class WeShareServer {
     public static final String SESSION_USER_KEY = "user";
+    private static final String REQUEST_FAILED_KEY = "weshare.failed";
+    private static final String MATCHED_ROUTE_KEY = "weshare.route";
+    private static final String UNMATCHED_ROUTE = "unmatched";
+    public static final String DATA_DIR_PROPERTY = "weshare.data.dir";
+    public static final String SHARDS_PROPERTY = "weshare.shards";
+    public static final String PAGE_CACHE_PROPERTY = "weshare.page.cache.bytes";
+    public static final String SESSION_SECRET_PROPERTY = "weshare.session.secret";
+    public static final String SESSION_SECURE_COOKIE_PROPERTY = "weshare.session.cookie.secure";
+    public static final String SESSION_DIR_PROPERTY = "weshare.session.dir";
+    public static final String SESSION_MEMORY_PROPERTY = "weshare.session.memory.bytes";
+    public static final String SLOW_REQUEST_PROPERTY = "weshare.slow.request.millis";
+    public static final String METRICS_TOKEN_PROPERTY = "weshare.metrics.token";
+    private static final long DEFAULT_SLOW_REQUEST_MILLIS = 1000;
+    private static final long DEFAULT_SESSION_MEMORY = 64L << 20;
+    private static final int SESSION_MAX_INACTIVE_SECONDS = (int) TimeUnit.DAYS.toSeconds(7);
+    private static final int SESSION_SAVE_PERIOD_SECONDS = 60;
     private static final String PAGES_DIR = "/html";
     private static final String TEMPLATES_DIR = "/templates/";
 
     private final Javalin appServer;
+    private final FileBasedStore store;
+    private final StaticAssets assets;
+    private final Metrics metrics = new Metrics();
+    // only scrapers presenting the METRICS_TOKEN_PROPERTY system property, or from this machine if it is not set
+    private final ScrapeAccess scrapeAccess = new ScrapeAccess(System.getProperty(METRICS_TOKEN_PROPERTY));
 
     public WeShareServer() {
+        assets = StaticAssets.load(PAGES_DIR);
+        ServiceRegistry.configure(LoginSessions.class, loginSessions());
         JavalinThymeleaf.configure(templateEngine());
+        JavalinRenderer.register(new RecordingFileRenderer(new TimedFileRenderer(JavalinThymeleaf.INSTANCE, metrics)), ".html");
+        ServiceRegistry.configure(Metrics.class, metrics);
 
         appServer = Javalin.create(config -> {
-            config.addStaticFiles(PAGES_DIR, Location.CLASSPATH);
             config.accessManager(accessManager());
+            config.requestLogger(this::recordRequest);
             config.sessionHandler(sessionHandler());
+            // Jetty's compression, unlike Javalin's, leaves alone responses that are already compressed, such as the
+            // static assets, which are gzipped once at startup
+            config.compressionStrategy(CompressionStrategy.NONE);
+            config.configureServletContextHandler(handler -> handler.setGzipHandler(gzipHandler()));
         });
 
-        ServiceRegistry.configure(PersonDAO.class, new PersonDAOImpl());
-        ServiceRegistry.configure(ExpenseDAO.class, new ExpenseDAOImpl());
+        store = openStore();
+        if (store == null) {
+            ServiceRegistry.configure(PersonDAO.class, new TimedPersonDAO(new PersonDAOImpl(), metrics));
+            ServiceRegistry.configure(ExpenseDAO.class, decorated(inMemoryExpenseDAO(), List.of(), metrics));
+        } else {
+            ServiceRegistry.configure(PersonDAO.class, new TimedPersonDAO(store.personDAO(), metrics));
+            ServiceRegistry.configure(ExpenseDAO.class, decorated(store.expenseDAO(), store.expenses(), metrics));
+        }
+        registerGauges();
+        // rendered pages are only kept when the PAGE_CACHE_PROPERTY system property gives the cache a size in bytes
+        ServiceRegistry.configure(PageCache.class, new PageCache(Long.getLong(PAGE_CACHE_PROPERTY, 0)));
+        configureRequestTiming();
         Routes.configure(this);
+        assets.paths().forEach(path -> {
+            appServer.get(path, assets);
+            appServer.head(path, assets);
+        });
         configureExceptionsPage();
     }
 
+    private static GzipHandler gzipHandler() {
+        GzipHandler gzip = new GzipHandler();
+        // no browsers are left out, so responses need not vary by User-Agent
+        gzip.setExcludedAgentPatterns();
+        return gzip;
+    }
+
     public static void main(String[] args) {
         WeShareServer server = new WeShareServer();
         seedDemoData();
         server.start(5050);
     }
 
+    /**
+     * Who sent the request, as found by the access manager before the request reached its handler.
+     */
     @Nullable
     public static Person getPersonLoggedIn(Context context) {
-        return context.sessionAttribute(SESSION_USER_KEY);
+        return context.attribute(SESSION_USER_KEY);
     }
 
+    /**
+     * Logins are kept in the servlet session, unless the {@value SESSION_SECRET_PROPERTY} system property gives a
+     * secret to sign session cookies with instead. Every node sharing that secret can then serve every request.
+     * <p>
+     * A signed cookie is marked {@code Secure} when the request came over HTTPS. The
+     * {@value SESSION_SECURE_COOKIE_PROPERTY} system property, {@code true} or {@code false}, overrides that, e.g. for
+     * a proxy that terminates HTTPS without saying so.
+     */
+    private static LoginSessions loginSessions() {
+        String secret = System.getProperty(SESSION_SECRET_PROPERTY);
+        if (secret == null) return new ServerSideSessions();
+        String secure = System.getProperty(SESSION_SECURE_COOKIE_PROPERTY);
+        if (secure == null) return new SignedCookieSessions(secret);
+        boolean alwaysSecure = Boolean.parseBoolean(secure);
+        return new SignedCookieSessions(secret, Clock.systemUTC(), context -> alwaysSecure);
+    }
+
+    /**
+     * Sessions are kept in memory only, unless the {@value SESSION_DIR_PROPERTY} system property names a directory for
+     * them to be saved to. They then survive a restart, and the {@value SESSION_MEMORY_PROPERTY} system property caps
+     * how many bytes of them are kept in memory.
+     * <p>
+     * For that cap to hold there is no cache of live sessions in front of the store: a session is only a live object
+     * while a request is using it, and is loaded from the store's bounded memory, or its file, by each request. Two
+     * requests for the same session at once each get their own copy, which is fine for a login that is only written
+     * when someone logs in or out.
+     */
     private static Supplier<SessionHandler> sessionHandler() {
         SessionHandler sessionHandler = new SessionHandler();
-        SessionCache sessionCache = new DefaultSessionCache(sessionHandler);
-        sessionCache.setSessionDataStore(new NullSessionDataStore());
+        SessionCache sessionCache;
+        String sessionDir = System.getProperty(SESSION_DIR_PROPERTY);
+        if (sessionDir == null) {
+            sessionCache = new DefaultSessionCache(sessionHandler);
+            sessionCache.setSessionDataStore(new NullSessionDataStore());
+        } else {
+            long memory = Long.getLong(SESSION_MEMORY_PROPERTY, DEFAULT_SESSION_MEMORY);
+            WriteBehindSessionDataStore store = new WriteBehindSessionDataStore(Path.of(sessionDir), memory);
+            // a session that only changed its access time is saved at most this often
+            store.setSavePeriodSec(SESSION_SAVE_PERIOD_SECONDS);
+            sessionCache = new NullSessionCache(sessionHandler);
+            sessionCache.setSessionDataStore(store);
+            sessionCache.setRemoveUnloadableSessions(true);
+            sessionHandler.setMaxInactiveInterval(SESSION_MAX_INACTIVE_SECONDS);
+        }
         sessionHandler.setSessionCache(sessionCache);
         sessionHandler.setHttpOnly(true);
         return () -> sessionHandler;
     }
 
+    /**
+     * People and expenses are kept in memory only, unless the {@value DATA_DIR_PROPERTY} system property names a
+     * directory for them to be persisted to.
+     *
+     * @return the store in that directory, or null when there is none
+     */
+    @Nullable
+    private static FileBasedStore openStore() {
+        String dataDir = System.getProperty(DATA_DIR_PROPERTY);
+        if (dataDir == null) return null;
+        try {
+            return FileBasedStore.open(Path.of(dataDir));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open data directory " + dataDir, e);
+        }
+    }
+
+    /**
+     * Setting the {@value SHARDS_PROPERTY} system property splits expenses over that many shards, so that saves for
+     * different people can run in parallel.
+     */
+    private static ExpenseDAO inMemoryExpenseDAO() {
+        Integer shards = Integer.getInteger(SHARDS_PROPERTY);
+        return shards == null ? new ExpenseDAOImpl() : new ShardedExpenseDAO(shards);
+    }
+
+    /**
+     * Wraps the DAO in the decorators that keep derived views of the expenses up to date, and registers those views.
+     *
+     * @param existing the expenses the DAO already holds
+     */
+    private static ExpenseDAO decorated(ExpenseDAO expenseDAO, Collection<Expense> existing, Metrics metrics) {
+        ExpenseSummaries summaries = new ExpenseSummaries();
+        ServiceRegistry.configure(ExpenseSummaries.class, summaries);
+        ExpenseColumns columns = new ExpenseColumns();
+        ServiceRegistry.configure(ExpenseColumns.class, columns);
+        DataVersions versions = new DataVersions();
+        ServiceRegistry.configure(DataVersions.class, versions);
+        // versioning goes outside the views, so that a page only sees a new version once every view is up to date, and
+        // timing and flight recorder events go outside everything, so that keeping the views up to date counts as time
+        // spent in the DAO
+        return new RecordingExpenseDAO(new TimedExpenseDAO(new VersioningExpenseDAO(
+                new ColumnarExpenseDAO(new SummarisingExpenseDAO(expenseDAO, summaries, existing), columns, existing),
+                versions), metrics));
+    }
+
+    /**
+     * Every request is timed by phase. Requests slower than the {@value SLOW_REQUEST_PROPERTY} system property, in
+     * milliseconds, are logged with their breakdown.
+     */
+    private void configureRequestTiming() {
+        RequestTiming timing = new RequestTiming(Long.getLong(SLOW_REQUEST_PROPERTY, DEFAULT_SLOW_REQUEST_MILLIS));
+        appServer.before(timing::before);
+        appServer.after(timing::after);
+    }
+
+    private void registerGauges() {
+        metrics.gauge("weshare_expenses", "Expenses stored.", () -> ServiceRegistry.lookup(ExpenseDAO.class).countExpenses());
+        metrics.gauge("weshare_payment_requests", "Payment requests stored.",
+                () -> ServiceRegistry.lookup(ExpenseDAO.class).countPaymentRequests());
+        metrics.gauge("weshare_people", "People registered.", () -> ServiceRegistry.lookup(PersonDAO.class).countPeople());
+    }
+
+    /**
+     * Requests that matched no route are all counted together, so that probing for pages cannot add labels without end.
+     */
+    private void recordRequest(Context context, Float executionMillis) {
+        String route = Objects.requireNonNullElse(context.attribute(MATCHED_ROUTE_KEY), UNMATCHED_ROUTE);
+        // counted as written by the handler, so a page is counted before Jetty compresses it and an asset as it was sent
+        long bytes = Request.getBaseRequest(context.req).getResponse().getHttpOutput().getWritten();
+        boolean failed = context.attribute(REQUEST_FAILED_KEY) != null;
+        metrics.requestHandled(context.method(), route, context.status(), failed, (long) (executionMillis * 1e6), bytes);
+        RequestTimer timer = RequestTiming.timerOf(context);
+        if (timer != null) {
+            timer.phases().forEach(phase -> metrics.requestPhase(context.method(), route, phase.getName(), phase.getNanos()));
+        }
+    }
+
     private static void seedDemoData() {
         PersonDAO personDAO = ServiceRegistry.lookup(PersonDAO.class);
         ExpenseDAO expenseDAO = ServiceRegistry.lookup(ExpenseDAO.class);
 
-        Person student1 = new Person("student1@wethinkcode.co.za");
-        Person student2 = new Person("student2@wethinkcode.co.za");
-        Person student3 = new Person("student3@wethinkcode.co.za");
+        Person student1 = Person.of("student1@wethinkcode.co.za");
+        if (!expenseDAO.findExpensesForPerson(student1).isEmpty()) return; // already seeded into the data directory
+
+        Person student2 = Person.of("student2@wethinkcode.co.za");
+        Person student3 = Person.of("student3@wethinkcode.co.za");
         Stream.of(student1, student2, student3).forEach(personDAO::savePerson);
 
         Expense expense1 = new Expense(student1, "Lunch", amountOf(300), TODAY);
@@ -106,6 +309,8 @@ public class WeShareServer {
             PrintWriter pw = new PrintWriter(sw);
             e.printStackTrace(pw);
             String stackTrace = sw.toString().replace(System.getProperty("line.separator"), "<br/>\n");
+            metrics.exceptionPageShown(e.getClass());
+            context.attribute(REQUEST_FAILED_KEY, true);
             context.render("exception.html",
                     Map.of("exception", e,
                             "stacktrace", stackTrace));
@@ -122,6 +327,12 @@ public class WeShareServer {
 
     public void stop() {
         this.appServer.stop();
+        if (store == null) return;
+        try {
+            store.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close data directory", e);
+        }
     }
 
     public int port() {
@@ -132,17 +343,28 @@ public class WeShareServer {
         return new AccessManager() {
             @Override
             public void manage(@NotNull Handler handler, @NotNull Context context, @NotNull Set<RouteRole> set) throws Exception {
-                if (hasNoSession(context)) {
+                // only requests that matched a route get this far, so this is where their route is known
+                context.attribute(MATCHED_ROUTE_KEY, context.endpointHandlerPath());
+                if (assets.isPublic(context.path())) {
+                    handler.handle(context);
+                    return;
+                }
+                // the metrics are scraped by a monitoring system that cannot log in
+                if (context.path().equals(Routes.METRICS)) {
+                    if (scrapeAccess.allows(context)) handler.handle(context);
+                    else context.status(HttpCode.FORBIDDEN);
+                    return;
+                }
+                // the templates and handlers find the person logged in on the request
+                Person loggedInPerson = ServiceRegistry.lookup(LoginSessions.class).personLoggedIn(context);
+                if (loggedInPerson != null) context.attribute(SESSION_USER_KEY, loggedInPerson);
+
+                if (Objects.isNull(loggedInPerson) && !context.path().equals(Routes.LOGIN_ACTION)) {
                     context.redirect(Routes.LOGIN_PAGE);
                 } else {
                     handler.handle(context);
                 }
             }
-
-            private boolean hasNoSession(@NotNull Context context) {
-                Person loggedInPerson = context.sessionAttribute(SESSION_USER_KEY);
-                return Objects.isNull(loggedInPerson) && !context.path().equals(Routes.LOGIN_ACTION);
-            }
         };
     }
 
@@ -152,6 +374,7 @@ public class WeShareServer {
         resolver.setPrefix(TEMPLATES_DIR);
         templateEngine.setTemplateResolver(resolver);
         templateEngine.addDialect(new LayoutDialect());
+        templateEngine.setLinkBuilder(new FingerprintedLinkBuilder(assets));
         return templateEngine;
     }
 }
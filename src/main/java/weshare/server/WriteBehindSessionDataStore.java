@@ -0,0 +1,277 @@
+package weshare.server;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.eclipse.jetty.server.session.AbstractSessionDataStore;
+import org.eclipse.jetty.server.session.SessionData;
+import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Keeps servlet sessions in files below a directory, so that they survive a restart, while holding only a bounded
+ * number of them in memory.
+ * <p>
+ * Saved sessions are not written straight away. They wait in memory, where saving the same session again replaces
+ * what is waiting, and a background writer puts everything that is waiting on disk every {@value FLUSH_MILLIS}ms and
+ * when the server stops. Should more than {@value MAX_WAITING} sessions be waiting, a save waits for them all to be
+ * written.
+ * The most recently used sessions are also kept in memory, encoded, up to a limit in bytes, so that most loads do not
+ * read a file.
+ * <p>
+ * Each session is one file, spread over 256 subdirectories. The expiry time comes first in the file, so expired
+ * sessions left behind by an earlier run can be found by reading only the first few bytes of each file.
+ */
+public class WriteBehindSessionDataStore extends AbstractSessionDataStore {
+    private static final Logger LOG = LoggerFactory.getLogger(WriteBehindSessionDataStore.class);
+    private static final int MAGIC = 0x57534431; // "WSD1"
+    private static final long FLUSH_MILLIS = 1000;
+    private static final int MAX_WAITING = 10_000;
+    private static final long ORPHAN_SCAN_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final Pattern SAFE_ID = Pattern.compile("[A-Za-z0-9._-]+");
+    private static final byte[] DELETED = new byte[0];
+
+    private final Path dir;
+    private final Cache<String, byte[]> recent;
+    private final Map<String, byte[]> waiting = new ConcurrentHashMap<>();
+    private ScheduledExecutorService writer;
+    private long lastOrphanScan;
+
+    /**
+     * @param maxBytesInMemory how much of the most recently used sessions to keep in memory
+     */
+    public WriteBehindSessionDataStore(Path dir, long maxBytesInMemory) {
+        this.dir = dir;
+        this.recent = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytesInMemory)
+                .weigher((String id, byte[] bytes) -> id.length() + bytes.length)
+                .build();
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        Files.createDirectories(dir);
+        writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-writer-" + dir.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::flushQuietly, FLUSH_MILLIS, FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+        super.doStart();
+    }
+
+    /**
+     * Writes everything still waiting before stopping, so a rolling restart loses no sessions.
+     */
+    @Override
+    protected void doStop() throws Exception {
+        writer.shutdown();
+        writer.awaitTermination(10, TimeUnit.SECONDS);
+        flush();
+        recent.invalidateAll();
+        super.doStop();
+    }
+
+    @Override
+    public boolean isPassivating() {
+        return true;
+    }
+
+    @Override
+    public boolean exists(String id) throws Exception {
+        SessionData data = doLoad(id);
+        return data != null && !data.isExpiredAt(System.currentTimeMillis());
+    }
+
+    @Override
+    public SessionData doLoad(String id) throws Exception {
+        byte[] bytes = waiting.get(id);
+        if (bytes == DELETED) return null;
+        if (bytes == null) bytes = recent.getIfPresent(id);
+        if (bytes == null) {
+            bytes = read(id);
+            if (bytes == null) return null;
+            recent.put(id, bytes);
+        }
+        return decode(bytes);
+    }
+
+    @Override
+    public void doStore(String id, SessionData data, long lastSaveTime) throws Exception {
+        byte[] bytes = encode(data);
+        recent.put(id, bytes);
+        waiting.put(id, bytes);
+        if (waiting.size() > MAX_WAITING) flush();
+    }
+
+    @Override
+    public boolean delete(String id) throws Exception {
+        recent.invalidate(id);
+        byte[] previous = waiting.put(id, DELETED);
+        return previous == null ? Files.exists(fileFor(id)) : previous != DELETED;
+    }
+
+    /**
+     * The candidates that have expired or are gone, and once an hour any expired session on disk that this node no
+     * longer knows about, for example because it expired while the server was down.
+     */
+    @Override
+    public Set<String> doGetExpired(Set<String> candidates) {
+        long now = System.currentTimeMillis();
+        Set<String> expired = new HashSet<>();
+        for (String id : candidates) {
+            try {
+                SessionData data = doLoad(id);
+                if (data == null || data.isExpiredAt(now)) expired.add(id);
+            } catch (Exception e) {
+                LOG.warn("Could not load session {}, treating it as expired", id, e);
+                expired.add(id);
+            }
+        }
+        if (now - lastOrphanScan >= ORPHAN_SCAN_MILLIS) {
+            lastOrphanScan = now;
+            expired.addAll(expiredOnDisk(now));
+        }
+        return expired;
+    }
+
+    /**
+     * Puts everything that is waiting on disk. A session saved again while it is being written stays waiting for the
+     * next flush. Only one flush runs at a time, so an older copy of a session can never overwrite a newer one.
+     */
+    synchronized void flush() throws IOException {
+        for (Map.Entry<String, byte[]> entry : waiting.entrySet()) {
+            String id = entry.getKey();
+            byte[] bytes = entry.getValue();
+            if (bytes == DELETED) {
+                Files.deleteIfExists(fileFor(id));
+            } else {
+                write(id, bytes);
+            }
+            waiting.remove(id, bytes);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Could not write sessions to {}, will try again", dir, e);
+        }
+    }
+
+    private Set<String> expiredOnDisk(long now) {
+        Set<String> expired = new HashSet<>();
+        try (Stream<Path> files = Files.walk(dir, 2)) {
+            files.filter(Files::isRegularFile)
+                    .filter(file -> !file.getFileName().toString().endsWith(".writing"))
+                    .forEach(file -> {
+                        long expiry = expiryOf(file);
+                        if (expiry > 0 && expiry <= now) expired.add(file.getFileName().toString());
+                    });
+        } catch (IOException e) {
+            LOG.warn("Could not look for expired sessions in {}", dir, e);
+        }
+        return expired;
+    }
+
+    private static long expiryOf(Path file) {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            return in.readInt() == MAGIC ? in.readLong() : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private void write(String id, byte[] bytes) throws IOException {
+        Path file = fileFor(id);
+        Files.createDirectories(file.getParent());
+        Path written = file.resolveSibling(file.getFileName() + ".writing");
+        Files.write(written, bytes);
+        Files.move(written, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private byte[] read(String id) throws IOException {
+        try {
+            return Files.readAllBytes(fileFor(id));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private Path fileFor(String id) {
+        if (!SAFE_ID.matcher(id).matches()) throw new IllegalArgumentException("Unexpected session id " + id);
+        return dir.resolve(String.format("%02x", id.hashCode() & 0xff)).resolve(id);
+    }
+
+    private static byte[] encode(SessionData data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeLong(data.getExpiry());
+            out.writeUTF(data.getId());
+            out.writeUTF(data.getContextPath());
+            out.writeUTF(data.getVhost());
+            out.writeUTF(data.getLastNode() == null ? "" : data.getLastNode());
+            out.writeLong(data.getCreated());
+            out.writeLong(data.getAccessed());
+            out.writeLong(data.getLastAccessed());
+            out.writeLong(data.getCookieSet());
+            out.writeLong(data.getMaxInactiveMs());
+            ObjectOutputStream attributes = new ObjectOutputStream(out);
+            SessionData.serializeAttributes(data, attributes);
+            attributes.flush();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static SessionData decode(byte[] bytes) throws IOException, ClassNotFoundException {
+        InputStream stream = new ByteArrayInputStream(bytes);
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC) throw new IOException("Not a saved session");
+        long expiry = in.readLong();
+        String id = in.readUTF();
+        String contextPath = in.readUTF();
+        String vhost = in.readUTF();
+        String lastNode = in.readUTF();
+        long created = in.readLong();
+        long accessed = in.readLong();
+        long lastAccessed = in.readLong();
+        long cookieSet = in.readLong();
+        long maxInactiveMs = in.readLong();
+
+        SessionData data = new SessionData(id, contextPath, vhost, created, accessed, lastAccessed, maxInactiveMs);
+        data.setExpiry(expiry);
+        data.setCookieSet(cookieSet);
+        data.setLastNode(lastNode);
+        SessionData.deserializeAttributes(data, new ClassLoadingObjectInputStream(stream));
+        data.clean();
+        return data;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[dir=%s,waiting=%d,inMemory=%d]", super.toString(), dir, waiting.size(), recent.size());
+    }
+}
@@ -0,0 +1,27 @@
+package weshare.server.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A call to the {@link weshare.persistence.ExpenseDAO}, recorded by {@link RecordingExpenseDAO}.
+ */
+@Name("weshare.ExpenseDAO")
+@Label("Expense DAO Call")
+@Category({"WeShare", "Persistence"})
+@StackTrace(false)
+class ExpenseDAOEvent extends jdk.jfr.Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Person")
+    @Description("The email of the person the call was about, if any")
+    String person;
+
+    @Label("Result Size")
+    @Description("How many items were returned, or -1 for a stream, which is read after the call, or a call that failed")
+    long resultSize;
+}
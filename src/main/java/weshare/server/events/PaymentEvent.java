@@ -0,0 +1,53 @@
+package weshare.server.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import weshare.model.Payment;
+import weshare.model.PaymentRequest;
+import weshare.model.Person;
+
+import java.util.Optional;
+
+/**
+ * An attempt to pay a payment request, which moves it from unpaid to paid unless someone else got there first.
+ * <p>
+ * The duration covers the attempt itself, not saving the paid request afterwards.
+ */
+@Name("weshare.Payment")
+@Label("Payment")
+@Category({"WeShare", "Payments"})
+@StackTrace(false)
+public class PaymentEvent extends jdk.jfr.Event {
+    @Label("Payment Request")
+    String paymentRequest;
+
+    @Label("Person Paying")
+    String personPaying;
+
+    @Label("Person Paid")
+    String personPaid;
+
+    @Label("Amount")
+    String amount;
+
+    @Label("Paid")
+    @Description("False if the request had already been paid")
+    boolean paid;
+
+    /**
+     * Finishes the event for an attempt that was started with {@link #begin()}, committing it if it is being recorded.
+     */
+    public void attempted(PaymentRequest paymentRequest, Person personPaying, Optional<Payment> payment) {
+        end();
+        if (!shouldCommit()) return;
+        this.paymentRequest = paymentRequest.getId().toString();
+        this.personPaying = personPaying.getEmail();
+        this.personPaid = paymentRequest.getExpense().getPerson().getEmail();
+        this.amount = paymentRequest.getAmountToPay().toString();
+        this.paid = payment.isPresent();
+        commit();
+    }
+}
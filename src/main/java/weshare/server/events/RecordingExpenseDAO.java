@@ -0,0 +1,119 @@
+package weshare.server.events;
+
+import weshare.model.Expense;
+import weshare.model.PaymentRequest;
+import weshare.model.Person;
+import weshare.persistence.Cursor;
+import weshare.persistence.ExpenseDAO;
+import weshare.persistence.ForwardingExpenseDAO;
+import weshare.persistence.Page;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * An {@link ExpenseDAO} that emits an {@link ExpenseDAOEvent} for every call, for the JDK Flight Recorder.
+ * <p>
+ * When the event is not being recorded, which is the usual case, each call costs no more than checking that.
+ */
+public class RecordingExpenseDAO extends ForwardingExpenseDAO {
+    private static final long UNKNOWN_SIZE = -1;
+
+    private final ExpenseDAO delegate;
+
+    public RecordingExpenseDAO(ExpenseDAO delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    protected ExpenseDAO delegate() {
+        return delegate;
+    }
+
+    @Override
+    public Collection<Expense> findExpensesForPerson(Person person) {
+        return recorded("findExpensesForPerson", person, () -> delegate.findExpensesForPerson(person), Collection::size);
+    }
+
+    @Override
+    public Expense save(Expense expense) {
+        return recorded("save", expense.getPerson(), () -> delegate.save(expense), saved -> 1);
+    }
+
+    @Override
+    public Optional<Expense> get(UUID id) {
+        return recorded("get", null, () -> delegate.get(id), found -> found.isPresent() ? 1 : 0);
+    }
+
+    @Override
+    public Optional<PaymentRequest> getPaymentRequest(UUID id) {
+        return recorded("getPaymentRequest", null, () -> delegate.getPaymentRequest(id), found -> found.isPresent() ? 1 : 0);
+    }
+
+    @Override
+    public Collection<PaymentRequest> findPaymentRequestsSent(Person person) {
+        return recorded("findPaymentRequestsSent", person, () -> delegate.findPaymentRequestsSent(person), Collection::size);
+    }
+
+    @Override
+    public Collection<PaymentRequest> findPaymentRequestsReceived(Person person) {
+        return recorded("findPaymentRequestsReceived", person, () -> delegate.findPaymentRequestsReceived(person), Collection::size);
+    }
+
+    @Override
+    public Page<Expense> findExpensesForPerson(Person person, Cursor after, int limit) {
+        return recorded("findExpensesForPerson", person, () -> delegate.findExpensesForPerson(person, after, limit), page -> page.getItems().size());
+    }
+
+    @Override
+    public Page<Expense> findOpenExpensesForPerson(Person person, Cursor after, int limit) {
+        return recorded("findOpenExpensesForPerson", person, () -> delegate.findOpenExpensesForPerson(person, after, limit), page -> page.getItems().size());
+    }
+
+    @Override
+    public Page<PaymentRequest> findPaymentRequestsSent(Person person, Cursor after, int limit) {
+        return recorded("findPaymentRequestsSent", person, () -> delegate.findPaymentRequestsSent(person, after, limit), page -> page.getItems().size());
+    }
+
+    @Override
+    public Page<PaymentRequest> findPaymentRequestsReceived(Person person, Cursor after, int limit) {
+        return recorded("findPaymentRequestsReceived", person, () -> delegate.findPaymentRequestsReceived(person, after, limit), page -> page.getItems().size());
+    }
+
+    @Override
+    public Stream<Expense> streamExpensesForPerson(Person person) {
+        return recorded("streamExpensesForPerson", person, () -> delegate.streamExpensesForPerson(person), stream -> UNKNOWN_SIZE);
+    }
+
+    @Override
+    public Stream<PaymentRequest> streamPaymentRequestsSent(Person person) {
+        return recorded("streamPaymentRequestsSent", person, () -> delegate.streamPaymentRequestsSent(person), stream -> UNKNOWN_SIZE);
+    }
+
+    @Override
+    public Stream<PaymentRequest> streamPaymentRequestsReceived(Person person) {
+        return recorded("streamPaymentRequestsReceived", person, () -> delegate.streamPaymentRequestsReceived(person), stream -> UNKNOWN_SIZE);
+    }
+
+    private static <T> T recorded(String operation, Person person, Supplier<T> call, ToLongFunction<T> size) {
+        ExpenseDAOEvent event = new ExpenseDAOEvent();
+        event.begin();
+        T result = null;
+        try {
+            result = call.get();
+            return result;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = operation;
+                event.person = person == null ? null : person.getEmail();
+                event.resultSize = result == null ? UNKNOWN_SIZE : size.applyAsLong(result);
+                event.commit();
+            }
+        }
+    }
+}
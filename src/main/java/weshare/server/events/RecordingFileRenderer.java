@@ -0,0 +1,41 @@
+package weshare.server.events;
+
+import com.google.common.base.Utf8;
+import io.javalin.http.Context;
+import io.javalin.plugin.rendering.FileRenderer;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+
+/**
+ * A {@link FileRenderer} that emits a {@link TemplateRenderedEvent} for every template it renders, for the JDK Flight
+ * Recorder.
+ */
+public class RecordingFileRenderer implements FileRenderer {
+    private final FileRenderer renderer;
+
+    public RecordingFileRenderer(FileRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    @NotNull
+    @Override
+    public String render(@NotNull String template, @NotNull Map<String, Object> model, @NotNull Context context) throws Exception {
+        TemplateRenderedEvent event = new TemplateRenderedEvent();
+        event.begin();
+        String page = null;
+        try {
+            page = renderer.render(template, model, context);
+            return page;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.template = template.startsWith("/") ? template.substring(1) : template;
+                event.modelSize = model.size();
+                // only worked out while recording, since it means walking the whole page
+                event.bytes = page == null ? 0 : Utf8.encodedLength(page);
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package weshare.server.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A template rendered by {@link RecordingFileRenderer}.
+ */
+@Name("weshare.TemplateRendered")
+@Label("Template Rendered")
+@Category({"WeShare", "Rendering"})
+@StackTrace(false)
+class TemplateRenderedEvent extends jdk.jfr.Event {
+    @Label("Template")
+    String template;
+
+    @Label("Model Size")
+    int modelSize;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+}
@@ -0,0 +1,81 @@
+package weshare.server.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts durations into buckets whose width grows with the duration, so that any quantile can be read off with at
+ * most 12.5% error while recording stays a single lock-free increment.
+ * <p>
+ * Durations are bucketed in microseconds. Below {@value LINEAR} microseconds each value has its own bucket. Above
+ * that, every power of two is split into {@value SUB_BUCKETS} equal buckets. Durations beyond about 19 hours all land
+ * in the last bucket.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int LINEAR = 2 * SUB_BUCKETS;
+    private static final int LINEAR_BITS = Integer.numberOfTrailingZeros(LINEAR);
+    private static final int MAX_EXPONENT = 36;
+    private static final int BUCKETS = LINEAR + (MAX_EXPONENT - LINEAR_BITS + 1) * SUB_BUCKETS;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) counts[i] = new LongAdder();
+    }
+
+    public void record(long nanos) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+        counts[bucketOf(micros)].increment();
+        count.increment();
+        sumNanos.add(Math.max(0, nanos));
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long sumNanos() {
+        return sumNanos.sum();
+    }
+
+    /**
+     * The duration that a fraction {@code q} of the recorded durations did not exceed, as the upper edge of its bucket.
+     *
+     * @return the duration in nanoseconds, or 0 if nothing has been recorded
+     */
+    public long quantileNanos(double q) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts[i].sum();
+            total += snapshot[i];
+        }
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return TimeUnit.MICROSECONDS.toNanos(upperEdgeOf(i));
+        }
+        return TimeUnit.MICROSECONDS.toNanos(upperEdgeOf(BUCKETS - 1));
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < LINEAR) return (int) micros;
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) return BUCKETS - 1;
+        int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR + (exponent - LINEAR_BITS) * SUB_BUCKETS + sub;
+    }
+
+    static long upperEdgeOf(int bucket) {
+        if (bucket < LINEAR) return bucket + 1;
+        int exponent = (bucket - LINEAR) / SUB_BUCKETS + LINEAR_BITS;
+        int sub = (bucket - LINEAR) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS);
+    }
+}
@@ -0,0 +1,158 @@
+package weshare.server.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counts what the server does and writes it out in the Prometheus text exposition format.
+ * <p>
+ * Everything is recorded with lock-free counters, so recording costs a few uncontended increments per request. Labels
+ * are looked up in concurrent maps that only take a lock the first time a label is seen.
+ */
+public class Metrics {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final ConcurrentMap<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> renders = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> daoCalls = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> exceptionPages = new ConcurrentHashMap<>();
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Records a request once it has been answered.
+     *
+     * @param failed whether the request failed, whatever status it was answered with
+     */
+    public void requestHandled(String method, String route, int status, boolean failed, long nanos, long bytes) {
+        RouteMetrics metrics = routes.computeIfAbsent(method + " " + route, key -> new RouteMetrics(method, route));
+        metrics.requests.increment();
+        if (failed || status >= 500) metrics.errors.increment();
+        metrics.bytes.add(bytes);
+        metrics.latency.record(nanos);
+    }
+
+    /**
+     * Records how long a phase of a request took, such as its DAO calls or rendering, so that each route's time can
+     * be split up.
+     */
+    public void requestPhase(String method, String route, String phase, long nanos) {
+        RouteMetrics metrics = routes.computeIfAbsent(method + " " + route, key -> new RouteMetrics(method, route));
+        metrics.phaseNanos.computeIfAbsent(phase, key -> new LongAdder()).add(nanos);
+    }
+
+    public void templateRendered(String template, long nanos) {
+        renders.computeIfAbsent(template, key -> new LatencyHistogram()).record(nanos);
+    }
+
+    public void daoCalled(String operation, long nanos) {
+        daoCalls.computeIfAbsent(operation, key -> new LatencyHistogram()).record(nanos);
+    }
+
+    public void exceptionPageShown(Class<? extends Throwable> exception) {
+        exceptionPages.computeIfAbsent(exception.getName(), key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Reports a value that is read each time the metrics are written out, such as the size of a DAO.
+     */
+    public void gauge(String name, String help, LongSupplier value) {
+        gauges.put(name, new Gauge(help, value));
+    }
+
+    /**
+     * Everything recorded so far, with labels in a stable order.
+     */
+    public String export() {
+        StringBuilder out = new StringBuilder();
+        Map<String, RouteMetrics> byRoute = new TreeMap<>(routes);
+
+        header(out, "weshare_requests_total", "counter", "Requests answered, by route.");
+        byRoute.values().forEach(route -> sample(out, "weshare_requests_total", route.labels(), route.requests.sum()));
+        header(out, "weshare_request_errors_total", "counter", "Requests that failed or were answered with a 5xx status, by route.");
+        byRoute.values().forEach(route -> sample(out, "weshare_request_errors_total", route.labels(), route.errors.sum()));
+        header(out, "weshare_response_bytes_total", "counter", "Bytes of response body written, before any compression, by route.");
+        byRoute.values().forEach(route -> sample(out, "weshare_response_bytes_total", route.labels(), route.bytes.sum()));
+        header(out, "weshare_request_duration_seconds", "summary", "Time taken to answer requests, by route.");
+        byRoute.values().forEach(route -> summary(out, "weshare_request_duration_seconds", route.labels(), route.latency));
+        header(out, "weshare_request_phase_seconds_total", "counter", "Time spent in each phase of requests, such as dao and render, by route.");
+        byRoute.values().forEach(route -> new TreeMap<>(route.phaseNanos).forEach((phase, nanos) ->
+                sample(out, "weshare_request_phase_seconds_total", route.labels() + ",phase=\"" + escape(phase) + "\"",
+                        nanos.sum() / NANOS_PER_SECOND)));
+
+        header(out, "weshare_render_duration_seconds", "summary", "Time taken to render templates, by template.");
+        new TreeMap<>(renders).forEach((template, latency) ->
+                summary(out, "weshare_render_duration_seconds", "template=\"" + escape(template) + "\"", latency));
+        header(out, "weshare_dao_duration_seconds", "summary", "Time taken by DAO calls, by operation.");
+        new TreeMap<>(daoCalls).forEach((operation, latency) ->
+                summary(out, "weshare_dao_duration_seconds", "operation=\"" + escape(operation) + "\"", latency));
+
+        header(out, "weshare_exception_pages_total", "counter", "Times the exception page was shown, by exception.");
+        new TreeMap<>(exceptionPages).forEach((exception, count) ->
+                sample(out, "weshare_exception_pages_total", "exception=\"" + escape(exception) + "\"", count.sum()));
+
+        new TreeMap<>(gauges).forEach((name, gauge) -> {
+            header(out, name, "gauge", gauge.help);
+            sample(out, name, null, gauge.value.getAsLong());
+        });
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, String labels, LatencyHistogram latency) {
+        for (double quantile : QUANTILES) {
+            String quantileLabels = labels + ",quantile=\"" + quantile + "\"";
+            sample(out, name, quantileLabels, latency.quantileNanos(quantile) / NANOS_PER_SECOND);
+        }
+        sample(out, name + "_sum", labels, latency.sumNanos() / NANOS_PER_SECOND);
+        sample(out, name + "_count", labels, latency.count());
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, Object value) {
+        out.append(name);
+        if (labels != null) out.append('{').append(labels).append('}');
+        out.append(' ').append(value).append('\n');
+    }
+
+    static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static final class RouteMetrics {
+        private final String method;
+        private final String route;
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final ConcurrentMap<String, LongAdder> phaseNanos = new ConcurrentHashMap<>();
+
+        private RouteMetrics(String method, String route) {
+            this.method = method;
+            this.route = route;
+        }
+
+        private String labels() {
+            return "method=\"" + escape(method) + "\",route=\"" + escape(route) + "\"";
+        }
+    }
+
+    private static final class Gauge {
+        private final String help;
+        private final LongSupplier value;
+
+        private Gauge(String help, LongSupplier value) {
+            this.help = help;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package weshare.server.metrics;
+
+import io.javalin.http.Context;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Decides who may scrape the metrics. The monitoring system cannot log in, so instead it either presents a token, as
+ * {@code Authorization: Bearer <token>}, or, when no token is configured, scrapes from the same machine.
+ */
+public final class ScrapeAccess {
+    private static final String BEARER = "Bearer ";
+
+    private final byte[] token;
+
+    /**
+     * @param token the token scrapers must present, or null to only let in requests from a loopback address
+     */
+    public ScrapeAccess(@Nullable String token) {
+        this.token = token == null ? null : token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public boolean allows(Context context) {
+        return allows(context.header("Authorization"), context.req.getRemoteAddr());
+    }
+
+    boolean allows(@Nullable String authorization, String remoteAddress) {
+        if (token == null) return isLoopback(remoteAddress);
+        if (authorization == null || !authorization.startsWith(BEARER)) return false;
+        byte[] presented = authorization.substring(BEARER.length()).trim().getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(presented, token);
+    }
+
+    private static boolean isLoopback(String remoteAddress) {
+        try {
+            // the servlet container gives a literal address, so this never goes to DNS
+            return InetAddress.getByName(remoteAddress).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+}
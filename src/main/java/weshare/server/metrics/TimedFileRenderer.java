@@ -0,0 +1,34 @@
+package weshare.server.metrics;
+
+import io.javalin.http.Context;
+import io.javalin.plugin.rendering.FileRenderer;
+import org.jetbrains.annotations.NotNull;
+import weshare.server.timing.RequestTimer;
+
+import java.util.Map;
+
+/**
+ * A {@link FileRenderer} that records how long every template takes to render in the {@link Metrics}, and charges it
+ * to the {@code render} phase of the current request.
+ */
+public class TimedFileRenderer implements FileRenderer {
+    private final FileRenderer renderer;
+    private final Metrics metrics;
+
+    public TimedFileRenderer(FileRenderer renderer, Metrics metrics) {
+        this.renderer = renderer;
+        this.metrics = metrics;
+    }
+
+    @NotNull
+    @Override
+    public String render(@NotNull String template, @NotNull Map<String, Object> model, @NotNull Context context) throws Exception {
+        long start = System.nanoTime();
+        try (RequestTimer.Split ignored = RequestTimer.phase("render")) {
+            return renderer.render(template, model, context);
+        } finally {
+            // templates are named with and without a leading slash
+            metrics.templateRendered(template.startsWith("/") ? template.substring(1) : template, System.nanoTime() - start);
+        }
+    }
+}
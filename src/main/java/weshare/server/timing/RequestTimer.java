@@ -0,0 +1,134 @@
+package weshare.server.timing;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Splits the time a request takes into phases, such as reading from the DAO or rendering a template.
+ * <p>
+ * A timer belongs to the thread handling the request, from {@link #begin()} to {@link #end()}. Phases may nest, in
+ * which case the time is charged to the innermost one only, so the phases never add up to more than the request took.
+ * Timing a phase outside a request does nothing.
+ */
+public final class RequestTimer {
+    private static final ThreadLocal<RequestTimer> CURRENT = new ThreadLocal<>();
+    private static final Split NOTHING = () -> {
+    };
+
+    private final long start = System.nanoTime();
+    private final Map<String, Phase> phases = new LinkedHashMap<>();
+    private final Deque<Phase> running = new ArrayDeque<>();
+
+    private RequestTimer() {
+    }
+
+    /**
+     * Starts timing the request handled by this thread.
+     */
+    public static RequestTimer begin() {
+        RequestTimer timer = new RequestTimer();
+        CURRENT.set(timer);
+        return timer;
+    }
+
+    /**
+     * Stops timing the request handled by this thread.
+     *
+     * @return the timer of the request, or null if it was not being timed
+     */
+    public static RequestTimer end() {
+        RequestTimer timer = CURRENT.get();
+        CURRENT.remove();
+        return timer;
+    }
+
+    /**
+     * Starts a phase of the current request, to be closed when it is over:
+     * <pre>{@code
+     * try (RequestTimer.Split ignored = RequestTimer.phase("dao")) {
+     *     ...
+     * }
+     * }</pre>
+     */
+    public static Split phase(String name) {
+        RequestTimer timer = CURRENT.get();
+        return timer == null ? NOTHING : timer.enter(name);
+    }
+
+    public long elapsedNanos() {
+        return System.nanoTime() - start;
+    }
+
+    public Collection<Phase> phases() {
+        return Collections.unmodifiableCollection(phases.values());
+    }
+
+    private Split enter(String name) {
+        long now = System.nanoTime();
+        Phase outer = running.peek();
+        if (outer != null) outer.pause(now);
+        Phase phase = phases.computeIfAbsent(name, Phase::new);
+        phase.resume(now);
+        running.push(phase);
+        return () -> exit(phase);
+    }
+
+    private void exit(Phase phase) {
+        long now = System.nanoTime();
+        if (running.peek() != phase) return; // closed out of order, e.g. by a phase left open after an exception
+        running.pop();
+        phase.pause(now);
+        phase.count++;
+        Phase outer = running.peek();
+        if (outer != null) outer.resume(now);
+    }
+
+    /**
+     * A phase of the request that has been started, closed to stop it.
+     */
+    public interface Split extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * The time spent in one phase over the whole request.
+     */
+    public static final class Phase {
+        private final String name;
+        private long nanos;
+        private long since;
+        private int count;
+
+        private Phase(String name) {
+            this.name = name;
+        }
+
+        private void resume(long now) {
+            since = now;
+        }
+
+        private void pause(long now) {
+            nanos += now - since;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * How many times the phase was entered.
+         */
+        public int getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package weshare.server.timing;
+
+import io.javalin.http.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Times every request with a {@link RequestTimer}, from a before handler to an after handler, and reports where the
+ * time went.
+ * <p>
+ * The breakdown is sent in a {@code Server-Timing} header, which browsers show alongside their own timings. Requests
+ * slower than the threshold are also logged, at most one every {@value MIN_LOG_INTERVAL_MILLIS}ms so that a slow
+ * spell cannot flood the log; the next line logged says how many were left out.
+ */
+public class RequestTiming {
+    private static final Logger LOG = LoggerFactory.getLogger(RequestTiming.class);
+    private static final long MIN_LOG_INTERVAL_MILLIS = 100;
+    private static final long MIN_LOG_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(MIN_LOG_INTERVAL_MILLIS);
+    private static final String OTHER_PHASE = "app";
+    private static final String TIMER_KEY = "weshare.timer";
+
+    private final long slowNanos;
+    private final AtomicLong lastLogged = new AtomicLong(System.nanoTime() - MIN_LOG_INTERVAL_NANOS);
+    private final LongAdder notLogged = new LongAdder();
+
+    public RequestTiming(long slowMillis) {
+        this.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowMillis);
+    }
+
+    public void before(Context context) {
+        RequestTimer.begin();
+    }
+
+    public void after(Context context) {
+        RequestTimer timer = RequestTimer.end();
+        if (timer == null) return;
+        context.attribute(TIMER_KEY, timer);
+        long total = timer.elapsedNanos();
+        String breakdown = serverTiming(timer, total);
+        // ignored if a handler already sent the response
+        context.header("Server-Timing", breakdown);
+        if (total >= slowNanos) logSlow(context, total, breakdown);
+    }
+
+    /**
+     * The timer of a request that has been through {@link #after(Context)}, for reporting its phases.
+     *
+     * @return the timer, or null if the request was not timed
+     */
+    public static RequestTimer timerOf(Context context) {
+        return context.attribute(TIMER_KEY);
+    }
+
+    /**
+     * Each phase with its total duration in milliseconds, then the time spent outside any phase and the whole request.
+     */
+    static String serverTiming(RequestTimer timer, long total) {
+        StringBuilder header = new StringBuilder();
+        long inPhases = 0;
+        for (RequestTimer.Phase phase : timer.phases()) {
+            inPhases += phase.getNanos();
+            entry(header, phase.getName(), phase.getNanos())
+                    .append(";desc=\"").append(phase.getCount()).append(phase.getCount() == 1 ? " call\"" : " calls\"");
+        }
+        entry(header, OTHER_PHASE, Math.max(0, total - inPhases));
+        entry(header, "total", total);
+        return header.toString();
+    }
+
+    private static StringBuilder entry(StringBuilder header, String name, long nanos) {
+        if (header.length() > 0) header.append(", ");
+        return header.append(name).append(";dur=").append(String.format(Locale.ROOT, "%.3f", nanos / 1e6));
+    }
+
+    private void logSlow(Context context, long total, String breakdown) {
+        long now = System.nanoTime();
+        long last = lastLogged.get();
+        if (now - last < MIN_LOG_INTERVAL_NANOS || !lastLogged.compareAndSet(last, now)) {
+            notLogged.increment();
+            return;
+        }
+        long skipped = notLogged.sumThenReset();
+        LOG.warn("Slow request {} {} took {}ms [{}]{}", context.method(), context.path(),
+                TimeUnit.NANOSECONDS.toMillis(total), breakdown,
+                skipped == 0 ? "" : " (" + skipped + " more slow requests not logged)");
+    }
+}
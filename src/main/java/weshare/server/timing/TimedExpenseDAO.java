@@ -0,0 +1,113 @@
+package weshare.server.timing;
+
+import weshare.model.Expense;
+import weshare.model.PaymentRequest;
+import weshare.model.Person;
+import weshare.persistence.Cursor;
+import weshare.persistence.ExpenseDAO;
+import weshare.persistence.ForwardingExpenseDAO;
+import weshare.persistence.Page;
+import weshare.server.metrics.Metrics;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * An {@link ExpenseDAO} that charges the time of every call to the {@code dao} phase of the current request, and records
+ * it in the {@link Metrics} by operation.
+ * <p>
+ * Streams are read lazily, so only opening one is charged here; reading it is charged to whoever consumes it.
+ */
+public class TimedExpenseDAO extends ForwardingExpenseDAO {
+    static final String PHASE = "dao";
+
+    private final ExpenseDAO delegate;
+    private final Metrics metrics;
+
+    public TimedExpenseDAO(ExpenseDAO delegate, Metrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected ExpenseDAO delegate() {
+        return delegate;
+    }
+
+    @Override
+    public Collection<Expense> findExpensesForPerson(Person person) {
+        return timed("findExpensesForPerson", () -> delegate.findExpensesForPerson(person));
+    }
+
+    @Override
+    public Expense save(Expense expense) {
+        return timed("save", () -> delegate.save(expense));
+    }
+
+    @Override
+    public Optional<Expense> get(UUID id) {
+        return timed("get", () -> delegate.get(id));
+    }
+
+    @Override
+    public Optional<PaymentRequest> getPaymentRequest(UUID id) {
+        return timed("getPaymentRequest", () -> delegate.getPaymentRequest(id));
+    }
+
+    @Override
+    public Collection<PaymentRequest> findPaymentRequestsSent(Person person) {
+        return timed("findPaymentRequestsSent", () -> delegate.findPaymentRequestsSent(person));
+    }
+
+    @Override
+    public Collection<PaymentRequest> findPaymentRequestsReceived(Person person) {
+        return timed("findPaymentRequestsReceived", () -> delegate.findPaymentRequestsReceived(person));
+    }
+
+    @Override
+    public Page<Expense> findExpensesForPerson(Person person, Cursor after, int limit) {
+        return timed("findExpensesForPersonPaged", () -> delegate.findExpensesForPerson(person, after, limit));
+    }
+
+    @Override
+    public Page<Expense> findOpenExpensesForPerson(Person person, Cursor after, int limit) {
+        return timed("findOpenExpensesForPerson", () -> delegate.findOpenExpensesForPerson(person, after, limit));
+    }
+
+    @Override
+    public Page<PaymentRequest> findPaymentRequestsSent(Person person, Cursor after, int limit) {
+        return timed("findPaymentRequestsSentPaged", () -> delegate.findPaymentRequestsSent(person, after, limit));
+    }
+
+    @Override
+    public Page<PaymentRequest> findPaymentRequestsReceived(Person person, Cursor after, int limit) {
+        return timed("findPaymentRequestsReceivedPaged", () -> delegate.findPaymentRequestsReceived(person, after, limit));
+    }
+
+    @Override
+    public Stream<Expense> streamExpensesForPerson(Person person) {
+        return timed("streamExpensesForPerson", () -> delegate.streamExpensesForPerson(person));
+    }
+
+    @Override
+    public Stream<PaymentRequest> streamPaymentRequestsSent(Person person) {
+        return timed("streamPaymentRequestsSent", () -> delegate.streamPaymentRequestsSent(person));
+    }
+
+    @Override
+    public Stream<PaymentRequest> streamPaymentRequestsReceived(Person person) {
+        return timed("streamPaymentRequestsReceived", () -> delegate.streamPaymentRequestsReceived(person));
+    }
+
+    private <T> T timed(String operation, Supplier<T> call) {
+        long start = System.nanoTime();
+        try (RequestTimer.Split ignored = RequestTimer.phase(PHASE)) {
+            return call.get();
+        } finally {
+            metrics.daoCalled(operation, System.nanoTime() - start);
+        }
+    }
+}
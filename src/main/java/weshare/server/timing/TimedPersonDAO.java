@@ -0,0 +1,46 @@
+package weshare.server.timing;
+
+import weshare.model.Person;
+import weshare.persistence.PersonDAO;
+import weshare.server.metrics.Metrics;
+
+import java.util.Optional;
+
+/**
+ * A {@link PersonDAO} that charges the time of every lookup and save to the {@code dao} phase of the current request,
+ * and records it in the {@link Metrics} by operation.
+ */
+public class TimedPersonDAO implements PersonDAO {
+    private final PersonDAO delegate;
+    private final Metrics metrics;
+
+    public TimedPersonDAO(PersonDAO delegate, Metrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Optional<Person> findPersonByEmail(String email) {
+        long start = System.nanoTime();
+        try (RequestTimer.Split ignored = RequestTimer.phase(TimedExpenseDAO.PHASE)) {
+            return delegate.findPersonByEmail(email);
+        } finally {
+            metrics.daoCalled("findPersonByEmail", System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Person savePerson(Person person) {
+        long start = System.nanoTime();
+        try (RequestTimer.Split ignored = RequestTimer.phase(TimedExpenseDAO.PHASE)) {
+            return delegate.savePerson(person);
+        } finally {
+            metrics.daoCalled("savePerson", System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long countPeople() {
+        return delegate.countPeople();
+    }
+}
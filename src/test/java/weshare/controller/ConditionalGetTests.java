@@ -0,0 +1,134 @@
+package weshare.controller;
+
+import io.javalin.http.Context;
+import org.junit.jupiter.api.Test;
+import weshare.model.Expense;
+import weshare.model.Person;
+import weshare.persistence.versions.DataVersions;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static weshare.model.DateHelper.TODAY;
+import static weshare.model.MoneyHelper.amountOf;
+
+public class ConditionalGetTests {
+    private static final long MODIFIED_AT = 1_700_000_000_123L;
+
+    private final Person student1 = Person.of("student1@wethinkcode.co.za");
+    private final Person student2 = Person.of("student2@wethinkcode.co.za");
+    private final DataVersions versions = new DataVersions(() -> MODIFIED_AT);
+
+    @Test
+    public void theViewerTagIsADigestOfTheNormalisedEmail() {
+        String tag = ConditionalGet.viewerTag(Person.of("student1@wethinkcode.co.za"));
+
+        assertThat(tag).matches("[0-9a-f]{32}");
+        assertThat(ConditionalGet.viewerTag(new Person("Student1@WeThinkCode.co.za"))).isEqualTo(tag);
+        assertThat(ConditionalGet.viewerTag(Person.of("student2@wethinkcode.co.za"))).isNotEqualTo(tag);
+    }
+
+    @Test
+    public void aMatchingTagIsAnsweredWithNotModified() {
+        String etag = etagFor(student1);
+        StubbedExchange reload = new StubbedExchange(Map.of("If-None-Match", etag));
+
+        assertThat(ConditionalGet.notModified(reload.context(), student1, versions.forPerson(student1))).isTrue();
+        assertThat(reload.status).isEqualTo(304);
+        assertThat(reload.responseHeaders).containsEntry("ETag", etag);
+    }
+
+    @Test
+    public void aStaleTagGetsTheWholePage() {
+        String stale = etagFor(student1);
+        versions.changed(new Expense(student1, "Lunch", amountOf(300), TODAY));
+        StubbedExchange reload = new StubbedExchange(Map.of("If-None-Match", stale));
+
+        assertThat(ConditionalGet.notModified(reload.context(), student1, versions.forPerson(student1))).isFalse();
+        assertThat(reload.status).isEqualTo(200);
+        assertThat(reload.responseHeaders.get("ETag")).isNotEqualTo(stale);
+    }
+
+    @Test
+    public void anotherViewersTagGetsTheWholePage() {
+        StubbedExchange reload = new StubbedExchange(Map.of("If-None-Match", etagFor(student2)));
+
+        assertThat(ConditionalGet.notModified(reload.context(), student1, versions.forPerson(student1))).isFalse();
+        assertThat(reload.status).isEqualTo(200);
+    }
+
+    @Test
+    public void anyTagAListOfTagsOrAWeakTagCanMatch() {
+        String etag = etagFor(student1);
+
+        assertThat(notModifiedWith(Map.of("If-None-Match", "*"))).isTrue();
+        assertThat(notModifiedWith(Map.of("If-None-Match", "\"other\", " + etag))).isTrue();
+        assertThat(notModifiedWith(Map.of("If-None-Match", "W/" + etag))).isTrue();
+        assertThat(notModifiedWith(Map.of("If-None-Match", "\"other\", W/\"another\""))).isFalse();
+    }
+
+    @Test
+    public void ifModifiedSinceIsComparedToTheSecondOfTheLastChange() {
+        String lastModified = httpDate(Instant.ofEpochSecond(MODIFIED_AT / 1000));
+        StubbedExchange first = new StubbedExchange(Map.of());
+        ConditionalGet.notModified(first.context(), student1, versions.forPerson(student1));
+        assertThat(first.responseHeaders).containsEntry("Last-Modified", lastModified);
+
+        assertThat(notModifiedWith(Map.of("If-Modified-Since", lastModified))).isTrue();
+        assertThat(notModifiedWith(Map.of("If-Modified-Since", httpDate(Instant.ofEpochSecond(MODIFIED_AT / 1000 - 1))))).isFalse();
+    }
+
+    private boolean notModifiedWith(Map<String, String> requestHeaders) {
+        return ConditionalGet.notModified(new StubbedExchange(requestHeaders).context(), student1, versions.forPerson(student1));
+    }
+
+    private String etagFor(Person viewer) {
+        StubbedExchange first = new StubbedExchange(Map.of());
+        ConditionalGet.notModified(first.context(), viewer, versions.forPerson(viewer));
+        return first.responseHeaders.get("ETag");
+    }
+
+    private static String httpDate(Instant instant) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(instant.atZone(ZoneOffset.UTC));
+    }
+
+    /**
+     * A request with the given headers and a response that remembers its status and headers, which is all that
+     * {@link ConditionalGet} touches.
+     */
+    private static class StubbedExchange {
+        private final Map<String, String> requestHeaders;
+        private final Map<String, String> responseHeaders = new HashMap<>();
+        private int status = 200;
+
+        private StubbedExchange(Map<String, String> requestHeaders) {
+            this.requestHeaders = requestHeaders;
+        }
+
+        private Context context() {
+            HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{HttpServletRequest.class},
+                    (proxy, method, args) -> method.getName().equals("getHeader") ? requestHeaders.get((String) args[0]) : null);
+            HttpServletResponse response = (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{HttpServletResponse.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "setHeader" -> responseHeaders.put((String) args[0], (String) args[1]);
+                            case "setStatus" -> status = (int) args[0];
+                            case "getStatus" -> {
+                                return status;
+                            }
+                        }
+                        return null;
+                    });
+            return new Context(request, response, Map.of());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package weshare.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import weshare.model.Expense;
+import weshare.model.Person;
+import weshare.persistence.ExpenseDAO;
+import weshare.persistence.collectionbased.ExpenseDAOImpl;
+import weshare.persistence.versions.DataVersions;
+import weshare.persistence.versions.VersioningExpenseDAO;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static weshare.model.DateHelper.TODAY;
+import static weshare.model.MoneyHelper.amountOf;
+
+public class PageCacheTests {
+    private final Person student1 = Person.of("student1@wethinkcode.co.za");
+    private final Person student2 = Person.of("student2@wethinkcode.co.za");
+
+    private DataVersions versions;
+    private ExpenseDAO dao;
+    private AtomicInteger renders;
+
+    @BeforeEach
+    public void newVersions() {
+        versions = new DataVersions();
+        dao = new VersioningExpenseDAO(new ExpenseDAOImpl(), versions);
+        renders = new AtomicInteger();
+    }
+
+    @Test
+    public void showingAPageAgainDoesNotRenderIt() {
+        PageCache cache = new PageCache(1 << 20);
+
+        byte[] first = cache.page("expenses.html", student1, versions.forPerson(student1), null, render("<p>1</p>"));
+        byte[] second = cache.page("expenses.html", student1, versions.forPerson(student1), null, render("<p>2</p>"));
+
+        assertThat(renders).hasValue(1);
+        assertThat(second).isEqualTo(first);
+    }
+
+    @Test
+    public void eachPersonAndQueryGetsTheirOwnPage() {
+        PageCache cache = new PageCache(1 << 20);
+
+        cache.page("expenses.html", student1, versions.forPerson(student1), null, render("<p>1</p>"));
+        cache.page("expenses.html", student2, versions.forPerson(student2), null, render("<p>2</p>"));
+        cache.page("expenses.html", student1, versions.forPerson(student1), "page=2", render("<p>3</p>"));
+
+        assertThat(renders).hasValue(3);
+    }
+
+    @Test
+    public void savingAnExpenseRendersThePageAfresh() {
+        PageCache cache = new PageCache(1 << 20);
+        cache.page("expenses.html", student1, versions.forPerson(student1), null, render("<p>before</p>"));
+
+        dao.save(new Expense(student1, "Lunch", amountOf(300), TODAY));
+        byte[] html = cache.page("expenses.html", student1, versions.forPerson(student1), null, render("<p>after</p>"));
+
+        assertThat(renders).hasValue(2);
+        assertThat(new String(html)).isEqualTo("<p>after</p>");
+    }
+
+    @Test
+    public void theCacheKeepsWithinItsSize() {
+        PageCache cache = new PageCache(100);
+        String page = "x".repeat(40);
+
+        for (int i = 0; i < 10; i++) {
+            cache.page("expenses.html", student1, versions.forPerson(student1), "page=" + i, render(page));
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    public void withoutASizeEveryPageIsRendered() {
+        PageCache cache = new PageCache(0);
+
+        cache.page("expenses.html", student1, versions.forPerson(student1), null, render("<p>1</p>"));
+        cache.page("expenses.html", student1, versions.forPerson(student1), null, render("<p>1</p>"));
+
+        assertThat(renders).hasValue(2);
+    }
+
+    private Supplier<String> render(String html) {
+        return () -> {
+            renders.incrementAndGet();
+            return html;
+        };
+    }
+}
@@ -0,0 +1,48 @@
+package weshare.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static weshare.model.DateHelper.TODAY;
+import static weshare.model.MoneyHelper.amountOf;
+
+public class ExpensePaymentRequestsTests {
+    private final Person student1 = new Person("student1@wethinkcode.co.za");
+    private final Person student2 = new Person("student2@wethinkcode.co.za");
+    private final Person student3 = new Person("student3@wethinkcode.co.za");
+
+    @Test
+    public void paymentRequestsAreListedSoonestDueFirst() {
+        Expense lunch = new Expense(student1, "Lunch", amountOf(300), TODAY);
+        PaymentRequest nextWeek = lunch.requestPayment(student2, amountOf(100), TODAY.plusDays(7));
+        PaymentRequest today = lunch.requestPayment(student3, amountOf(100), TODAY);
+        PaymentRequest tomorrow = lunch.requestPayment(student2, amountOf(100), TODAY.plusDays(1));
+        assertThat(lunch.listOfPaymentRequests()).containsExactly(today, tomorrow, nextWeek);
+    }
+
+    @Test
+    public void theListIsAnUnchangingSnapshot() {
+        Expense lunch = new Expense(student1, "Lunch", amountOf(300), TODAY);
+        lunch.requestPayment(student2, amountOf(100), TODAY.plusDays(1));
+        var before = lunch.listOfPaymentRequests();
+        lunch.requestPayment(student3, amountOf(100), TODAY);
+
+        assertThat(before).hasSize(1);
+        assertThat(lunch.listOfPaymentRequests()).hasSize(2);
+        assertThatThrownBy(before::clear).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    public void aPaymentRequestIsPaidByItsId() {
+        Expense lunch = new Expense(student1, "Lunch", amountOf(300), TODAY);
+        PaymentRequest paymentRequest = lunch.requestPayment(student2, amountOf(100), TODAY.plusDays(1));
+        lunch.payPaymentRequest(paymentRequest.getId(), student2, TODAY);
+        assertThat(paymentRequest.isPaid()).isTrue();
+        assertThatThrownBy(() -> lunch.payPaymentRequest(UUID.randomUUID(), student2, TODAY))
+                .isInstanceOf(WeShareException.class)
+                .hasMessageContaining("Cannot find payment request");
+    }
+}
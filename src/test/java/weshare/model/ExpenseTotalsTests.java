@@ -0,0 +1,42 @@
+package weshare.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static weshare.model.DateHelper.TODAY;
+import static weshare.model.DateHelper.TOMORROW;
+import static weshare.model.MoneyHelper.ZERO_RANDS;
+import static weshare.model.MoneyHelper.amountOf;
+
+public class ExpenseTotalsTests {
+    private final Person student1 = new Person("student1@wethinkcode.co.za");
+    private final Person student2 = new Person("student2@wethinkcode.co.za");
+    private final Person student3 = new Person("student3@wethinkcode.co.za");
+
+    @Test
+    public void totalsFollowRequestsAndPayments() {
+        Expense lunch = new Expense(student1, "Lunch", amountOf(300), TODAY);
+        PaymentRequest fromStudent2 = lunch.requestPayment(student2, amountOf(100), TOMORROW);
+        PaymentRequest fromStudent3 = lunch.requestPayment(student3, amountOf(200), TOMORROW);
+        assertThat(lunch.totalAmountOfPaymentsRequested()).isEqualTo(amountOf(300));
+        assertThat(lunch.totalAmountAvailableForPaymentRequests()).isEqualTo(ZERO_RANDS);
+        assertThat(lunch.totalAmountForPaymentsReceived()).isEqualTo(ZERO_RANDS);
+
+        fromStudent2.pay(student2, TODAY);
+        assertThat(lunch.totalAmountForPaymentsReceived()).isEqualTo(amountOf(100));
+        assertThat(lunch.isFullyPaidByOthers()).isFalse();
+
+        fromStudent3.pay(student3, TODAY);
+        assertThat(lunch.amountLessPaymentsReceived()).isEqualTo(ZERO_RANDS);
+        assertThat(lunch.isFullyPaidByOthers()).isTrue();
+    }
+
+    @Test
+    public void aPaymentThatLosesIsNotReceived() {
+        Expense lunch = new Expense(student1, "Lunch", amountOf(300), TODAY);
+        PaymentRequest fromStudent2 = lunch.requestPayment(student2, amountOf(100), TOMORROW);
+        fromStudent2.pay(student2, TODAY);
+        assertThat(fromStudent2.tryPay(student2, TODAY)).isEmpty();
+        assertThat(lunch.totalAmountForPaymentsReceived()).isEqualTo(amountOf(100));
+    }
+}
@@ -0,0 +1,92 @@
+package weshare.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static weshare.model.DateHelper.TODAY;
+import static weshare.model.DateHelper.TOMORROW;
+import static weshare.model.MoneyHelper.amountOf;
+
+public class PaymentRequestStateTests {
+    private final Person student1 = new Person("student1@wethinkcode.co.za");
+    private final Person student2 = new Person("student2@wethinkcode.co.za");
+
+    @Test
+    public void aPaymentRecordsWhoPaidAndWhen() {
+        PaymentRequest paymentRequest = new Expense(student1, "Lunch", amountOf(300), TODAY)
+                .requestPayment(student2, amountOf(100), TOMORROW);
+        assertThat(paymentRequest.getPayment()).isEmpty();
+
+        Payment payment = paymentRequest.pay(student2, TODAY.minusDays(1));
+        assertThat(paymentRequest.isPaid()).isTrue();
+        assertThat(paymentRequest.getPayment()).containsSame(payment);
+        assertThat(payment.getPersonPaying()).isEqualTo(student2);
+        assertThat(payment.getPaymentDate()).isEqualTo(TODAY.minusDays(1));
+    }
+
+    @Test
+    public void aRequestCannotBePaidTwice() {
+        PaymentRequest paymentRequest = new Expense(student1, "Lunch", amountOf(300), TODAY)
+                .requestPayment(student2, amountOf(100), TOMORROW);
+        paymentRequest.pay(student2, TODAY);
+        assertThat(paymentRequest.tryPay(student2, TODAY)).isEmpty();
+        assertThatThrownBy(() -> paymentRequest.pay(student2, TODAY))
+                .isInstanceOf(WeShareException.class)
+                .hasMessageContaining("already been paid");
+    }
+
+    @Test
+    public void aBadPaymentIsAnErrorEvenOnceTheRequestIsPaid() {
+        PaymentRequest paymentRequest = new Expense(student1, "Lunch", amountOf(300), TODAY)
+                .requestPayment(student2, amountOf(100), TOMORROW);
+        paymentRequest.pay(student2, TODAY);
+
+        assertThatThrownBy(() -> paymentRequest.tryPay(student1, TODAY))
+                .isInstanceOf(WeShareException.class)
+                .hasMessageContaining("Wrong person");
+        assertThatThrownBy(() -> paymentRequest.tryPay(student2, TOMORROW))
+                .isInstanceOf(WeShareException.class)
+                .hasMessageContaining("future");
+    }
+
+    @Test
+    public void exactlyOneConcurrentPaymentWins() throws Exception {
+        int payers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(payers);
+        try {
+            for (int round = 0; round < 50; round++) {
+                Expense lunch = new Expense(student1, "Lunch", amountOf(300), TODAY);
+                PaymentRequest paymentRequest = lunch.requestPayment(student2, amountOf(100), TOMORROW);
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Optional<Payment>>> attempts = new ArrayList<>();
+                for (int i = 0; i < payers; i++) {
+                    Callable<Optional<Payment>> attempt = () -> {
+                        start.await();
+                        return paymentRequest.tryPay(student2, TODAY);
+                    };
+                    attempts.add(executor.submit(attempt));
+                }
+                start.countDown();
+
+                int wins = 0;
+                for (Future<Optional<Payment>> attempt : attempts) {
+                    if (attempt.get().isPresent()) wins++;
+                }
+                assertThat(wins).isEqualTo(1);
+                assertThat(lunch.totalAmountForPaymentsReceived()).isEqualTo(amountOf(100));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package weshare.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PersonPoolTests {
+
+    @Test
+    public void theSameEmailGivesTheSamePerson() {
+        Person person = Person.of("student1@wethinkcode.co.za");
+        assertThat(Person.of(" Student1@WeThinkCode.co.za ")).isSameAs(person);
+        assertThat(person.getEmail()).isEqualTo("student1@wethinkcode.co.za");
+        assertThat(person).isEqualTo(new Person("student1@wethinkcode.co.za"));
+    }
+
+    @Test
+    public void aPersonMadeDirectlyIsNormalisedToo() {
+        Person person = new Person(" Student3@WeThinkCode.co.za ");
+        assertThat(person.getEmail()).isEqualTo("student3@wethinkcode.co.za");
+        assertThat(person).isEqualTo(Person.of("student3@wethinkcode.co.za"));
+        assertThatThrownBy(() -> new Person(null)).isInstanceOf(WeShareException.class);
+    }
+
+    @Test
+    public void theNameIsWorkedOutOnce() {
+        Person person = Person.of("student2@wethinkcode.co.za");
+        assertThat(person.getName()).isEqualTo("Student2").isSameAs(person.getName());
+    }
+
+    @Test
+    public void badEmailAddressesAreNotPooled() {
+        assertThatThrownBy(() -> Person.of("not an email"))
+                .isInstanceOf(WeShareException.class)
+                .hasMessageContaining("Bad email address");
+        assertThatThrownBy(() -> Person.of(null)).isInstanceOf(WeShareException.class);
+    }
+}
@@ -0,0 +1,68 @@
+package weshare.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static weshare.model.DateHelper.TODAY;
+import static weshare.model.MoneyHelper.amountOf;
+
+public class TimeOrderedIdGeneratorTests {
+
+    @Test
+    public void idsAreVersion7AndCarryTheTime() {
+        UUID id = new TimeOrderedIdGenerator(() -> 1_700_000_000_000L).nextId();
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+        assertThat(id.getMostSignificantBits() >>> 16).isEqualTo(1_700_000_000_000L);
+    }
+
+    @Test
+    public void idsKeepIncreasingWhenTheClockStandsStillOrGoesBack() {
+        long[] now = {1_700_000_000_000L};
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(() -> now[0]);
+        UUID previous = generator.nextId();
+        for (int i = 0; i < 10_000; i++) {
+            if (i == 5_000) now[0] -= 1_000;
+            UUID next = generator.nextId();
+            assertThat(next).isGreaterThan(previous);
+            previous = next;
+        }
+    }
+
+    @Test
+    public void idsAreUniqueAcrossThreads() throws Exception {
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator();
+        Set<UUID> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                workers.add(executor.submit(() -> {
+                    for (int j = 0; j < 10_000; j++) ids.add(generator.nextId());
+                }));
+            }
+            for (Future<?> worker : workers) worker.get();
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(ids).hasSize(80_000);
+    }
+
+    @Test
+    public void expensesGetTimeOrderedIds() {
+        Person person = Person.of("student1@wethinkcode.co.za");
+        Expense first = new Expense(person, "Lunch", amountOf(100), TODAY);
+        Expense second = new Expense(person, "Airtime", amountOf(100), TODAY);
+        assertThat(first.getId().version()).isEqualTo(7);
+        assertThat(second.getId()).isGreaterThan(first.getId());
+    }
+}
@@ -0,0 +1,37 @@
+package weshare.model;
+
+import org.javamoney.moneta.Money;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static weshare.model.MoneyHelper.amountOf;
+
+public class ZarCentsTests {
+
+    @Test
+    public void amountsConvertToCentsAndBack() {
+        assertThat(ZarCents.of(amountOf(300))).isEqualTo(30_000);
+        assertThat(ZarCents.of(Money.of(12.34, "ZAR"))).isEqualTo(1_234);
+        assertThat(ZarCents.toAmount(1_234)).isEqualTo(Money.of(12.34, "ZAR"));
+        assertThat(ZarCents.toAmount(0)).isEqualTo(MoneyHelper.ZERO_RANDS);
+    }
+
+    @Test
+    public void fractionsOfACentAreRounded() {
+        assertThat(ZarCents.of(Money.of(0.125, "ZAR"))).isEqualTo(12);
+        assertThat(ZarCents.of(Money.of(0.135, "ZAR"))).isEqualTo(14);
+    }
+
+    @Test
+    public void otherCurrenciesAreRejected() {
+        assertThatThrownBy(() -> ZarCents.of(Money.of(1, "USD")))
+                .isInstanceOf(WeShareException.class)
+                .hasMessageContaining("USD");
+    }
+
+    @Test
+    public void overflowIsNotSilent() {
+        assertThatThrownBy(() -> ZarCents.add(Long.MAX_VALUE, 1)).isInstanceOf(ArithmeticException.class);
+    }
+}
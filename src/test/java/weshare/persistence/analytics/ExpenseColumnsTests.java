@@ -0,0 +1,84 @@
+package weshare.persistence.analytics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import weshare.model.Expense;
+import weshare.model.PaymentRequest;
+import weshare.model.Person;
+import weshare.persistence.ExpenseDAO;
+import weshare.persistence.collectionbased.ExpenseDAOImpl;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static weshare.model.DateHelper.TODAY;
+import static weshare.model.DateHelper.TOMORROW;
+import static weshare.model.MoneyHelper.amountOf;
+
+public class ExpenseColumnsTests {
+    private final Person student1 = Person.of("student1@wethinkcode.co.za");
+    private final Person student2 = Person.of("student2@wethinkcode.co.za");
+
+    private ExpenseColumns columns;
+    private ExpenseDAO dao;
+
+    @BeforeEach
+    public void newColumns() {
+        columns = new ExpenseColumns();
+        dao = new ColumnarExpenseDAO(new ExpenseDAOImpl(), columns, List.of());
+    }
+
+    @Test
+    public void savedExpensesAreTotalledPerMonthAndPerson() {
+        dao.save(new Expense(student1, "Lunch", amountOf(300), TODAY));
+        dao.save(new Expense(student1, "Airtime", amountOf(100), TODAY.minusMonths(1)));
+        dao.save(new Expense(student2, "Movies", amountOf(150), TODAY));
+
+        assertThat(columns.totalCentsPerMonth()).containsExactly(
+                Map.entry(YearMonth.from(TODAY.minusMonths(1)), 10_000L),
+                Map.entry(YearMonth.from(TODAY), 45_000L));
+        assertThat(columns.totalCentsPerPerson()).containsOnly(
+                Map.entry(student1, 40_000L),
+                Map.entry(student2, 15_000L));
+        assertThat(columns.totalCentsBetween(TODAY.minusDays(1), TODAY)).isEqualTo(45_000L);
+    }
+
+    @Test
+    public void outstandingDebtDropsWhenARequestIsPaidAndSaved() {
+        Expense lunch = new Expense(student1, "Lunch", amountOf(300), TODAY);
+        PaymentRequest paymentRequest = lunch.requestPayment(student2, amountOf(100), TOMORROW);
+        dao.save(lunch);
+        assertThat(columns.outstandingCentsPerDebtor()).containsOnly(Map.entry(student2, 10_000L));
+        assertThat(columns.outstandingCentsPerCreditor()).containsOnly(Map.entry(student1, 10_000L));
+
+        paymentRequest.pay(student2, TODAY);
+        dao.save(lunch);
+        assertThat(columns.outstandingCents()).isZero();
+        assertThat(columns.outstandingCentsPerDebtor()).isEmpty();
+        assertThat(columns.expenseCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void largeReportsAreSplitAcrossThreads() {
+        int expenses = ExpenseColumns.PARALLEL_THRESHOLD * 3;
+        for (int i = 0; i < expenses; i++) {
+            Expense expense = new Expense(i % 2 == 0 ? student1 : student2, "Lunch", amountOf(2), TODAY);
+            expense.requestPayment(i % 2 == 0 ? student2 : student1, amountOf(1), TOMORROW);
+            columns.update(expense);
+        }
+        assertThat(columns.totalCentsPerPerson()).containsOnly(
+                Map.entry(student1, 100L * expenses),
+                Map.entry(student2, 100L * expenses));
+        assertThat(columns.outstandingCents()).isEqualTo(100L * expenses);
+    }
+
+    @Test
+    public void existingExpensesAreLoadedUpFront() {
+        Expense lunch = new Expense(student1, "Lunch", amountOf(300), TODAY);
+        ExpenseColumns loaded = new ExpenseColumns();
+        new ColumnarExpenseDAO(new ExpenseDAOImpl(), loaded, List.of(lunch));
+        assertThat(loaded.totalCentsPerPerson()).containsOnly(Map.entry(student1, 30_000L));
+    }
+}
@@ -0,0 +1,65 @@
+package weshare.persistence.collectionbased;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import weshare.model.Expense;
+import weshare.model.PaymentRequest;
+import weshare.model.Person;
+import weshare.persistence.ExpenseDAO;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static weshare.model.DateHelper.TODAY;
+import static weshare.model.DateHelper.TOMORROW;
+import static weshare.model.MoneyHelper.amountOf;
+
+public class ExpenseDAOIndexTests {
+    private final Person student1 = new Person("student1@wethinkcode.co.za");
+    private final Person student2 = new Person("student2@wethinkcode.co.za");
+
+    private ExpenseDAO dao;
+
+    @BeforeEach
+    public void newRepository() {
+        this.dao = new ExpenseDAOImpl();
+    }
+
+    @Test
+    public void savingAnExpenseAgainDoesNotDuplicateIt() {
+        Expense lunch = dao.save(new Expense(student1, "Lunch", amountOf(300), TODAY));
+        dao.save(lunch);
+        assertThat(dao.findExpensesForPerson(student1)).containsExactly(lunch);
+    }
+
+    @Test
+    public void expensesAreOnlyFoundForTheirOwner() {
+        Expense lunch = dao.save(new Expense(student1, "Lunch", amountOf(300), TODAY));
+        Expense movies = dao.save(new Expense(student2, "Movies", amountOf(150), TODAY));
+        assertThat(dao.findExpensesForPerson(student1)).containsExactly(lunch);
+        assertThat(dao.findExpensesForPerson(student2)).containsExactly(movies);
+    }
+
+    @Test
+    public void paymentRequestsAddedBeforeSavingAreReceivedByTheDebtor() {
+        Expense lunch = dao.save(new Expense(student1, "Lunch", amountOf(300), TODAY));
+        assertThat(dao.findPaymentRequestsReceived(student2)).isEmpty();
+
+        PaymentRequest paymentRequest = lunch.requestPayment(student2, amountOf(100), TOMORROW);
+        dao.save(lunch);
+        assertThat(dao.findPaymentRequestsReceived(student2)).containsExactly(paymentRequest);
+        assertThat(dao.findPaymentRequestsReceived(student1)).isEmpty();
+    }
+
+    @Test
+    public void paymentRequestsAreFoundByIdOnceSaved() {
+        Expense lunch = new Expense(student1, "Lunch", amountOf(300), TODAY);
+        PaymentRequest paymentRequest = lunch.requestPayment(student2, amountOf(100), TOMORROW);
+        assertThat(dao.getPaymentRequest(paymentRequest.getId())).isEmpty();
+
+        dao.save(lunch);
+        assertThat(dao.getPaymentRequest(paymentRequest.getId())).containsSame(paymentRequest);
+
+        ExpenseDAO sharded = new ShardedExpenseDAO(4);
+        sharded.save(lunch);
+        assertThat(sharded.getPaymentRequest(paymentRequest.getId())).containsSame(paymentRequest);
+    }
+}
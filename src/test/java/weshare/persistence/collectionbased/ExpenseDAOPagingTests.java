@@ -0,0 +1,145 @@
+package weshare.persistence.collectionbased;
+
+import org.junit.jupiter.api.Test;
+import weshare.model.Expense;
+import weshare.model.PaymentRequest;
+import weshare.model.Person;
+import weshare.persistence.Cursor;
+import weshare.persistence.ExpenseDAO;
+import weshare.persistence.Page;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static weshare.model.DateHelper.TODAY;
+import static weshare.model.MoneyHelper.amountOf;
+
+public class ExpenseDAOPagingTests {
+    private final Person student1 = new Person("student1@wethinkcode.co.za");
+    private final Person student2 = new Person("student2@wethinkcode.co.za");
+
+    @Test
+    public void expensesArePagedMostRecentFirst() {
+        checkExpensePages(new ExpenseDAOImpl());
+    }
+
+    @Test
+    public void shardedExpensesArePagedMostRecentFirst() {
+        checkExpensePages(new ShardedExpenseDAO(4));
+    }
+
+    @Test
+    public void paymentRequestsArePagedSoonestDueFirst() {
+        checkPaymentRequestPages(new ExpenseDAOImpl());
+    }
+
+    @Test
+    public void shardedPaymentRequestsArePagedSoonestDueFirst() {
+        checkPaymentRequestPages(new ShardedExpenseDAO(4));
+    }
+
+    @Test
+    public void openExpensesArePagedWithoutTheSettledOnes() {
+        checkOpenExpensePages(new ExpenseDAOImpl());
+    }
+
+    @Test
+    public void shardedOpenExpensesArePagedWithoutTheSettledOnes() {
+        checkOpenExpensePages(new ShardedExpenseDAO(4));
+    }
+
+    @Test
+    public void streamsFollowTheSameOrderAsPages() {
+        ExpenseDAO dao = new ExpenseDAOImpl();
+        Expense older = dao.save(new Expense(student1, "Lunch", amountOf(300), TODAY.minusDays(1)));
+        Expense newer = dao.save(new Expense(student1, "Movies", amountOf(150), TODAY));
+        PaymentRequest paymentRequest = newer.requestPayment(student2, amountOf(50), TODAY.plusDays(1));
+        dao.save(newer);
+
+        assertThat(dao.streamExpensesForPerson(student1)).containsExactly(newer, older);
+        assertThat(dao.streamPaymentRequestsSent(student1)).containsExactly(paymentRequest);
+        assertThat(dao.streamPaymentRequestsReceived(student2)).containsExactly(paymentRequest);
+        assertThat(dao.streamExpensesForPerson(student2)).isEmpty();
+    }
+
+    @Test
+    public void aPersonWithNothingGetsOneEmptyPage() {
+        Page<Expense> page = new ExpenseDAOImpl().findExpensesForPerson(student1, null, 10);
+        assertThat(page.getItems()).isEmpty();
+        assertThat(page.hasNext()).isFalse();
+    }
+
+    @Test
+    public void aCursorSurvivesTheTripThroughALink() {
+        Expense lunch = new Expense(student1, "Lunch", amountOf(300), TODAY);
+        Cursor cursor = Cursor.of(lunch);
+        assertThat(Cursor.parse(cursor.toString())).isEqualTo(cursor);
+        assertThat(Cursor.parse("")).isNull();
+    }
+
+    private void checkExpensePages(ExpenseDAO dao) {
+        List<Expense> saved = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            saved.add(dao.save(new Expense(student1, "Lunch " + i, amountOf(100), TODAY.minusDays(i))));
+        }
+        dao.save(new Expense(student2, "Movies", amountOf(150), TODAY));
+
+        Page<Expense> first = dao.findExpensesForPerson(student1, null, 2);
+        assertThat(first.getItems()).containsExactly(saved.get(0), saved.get(1));
+        Page<Expense> second = dao.findExpensesForPerson(student1, first.getNextCursor(), 2);
+        assertThat(second.getItems()).containsExactly(saved.get(2), saved.get(3));
+        Page<Expense> last = dao.findExpensesForPerson(student1, second.getNextCursor(), 2);
+        assertThat(last.getItems()).containsExactly(saved.get(4));
+        assertThat(last.hasNext()).isFalse();
+
+        // an expense added since the first page was read does not shift the pages that follow
+        dao.save(new Expense(student1, "Breakfast", amountOf(50), TODAY));
+        assertThat(dao.findExpensesForPerson(student1, first.getNextCursor(), 2).getItems())
+                .containsExactly(saved.get(2), saved.get(3));
+    }
+
+    private void checkOpenExpensePages(ExpenseDAO dao) {
+        List<Expense> open = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            Expense expense = new Expense(student1, "Lunch " + i, amountOf(100), TODAY.minusDays(i));
+            // every other expense, starting with the newest, is paid back in full
+            if (i % 2 == 0) expense.requestPayment(student2, amountOf(100), TODAY.plusDays(1)).pay(student2, TODAY);
+            else open.add(expense);
+            dao.save(expense);
+        }
+
+        Page<Expense> first = dao.findOpenExpensesForPerson(student1, null, 2);
+        assertThat(first.getItems()).containsExactly(open.get(0), open.get(1));
+        assertThat(first.hasNext()).isTrue();
+        Page<Expense> last = dao.findOpenExpensesForPerson(student1, first.getNextCursor(), 2);
+        assertThat(last.getItems()).containsExactly(open.get(2));
+        assertThat(last.hasNext()).isFalse();
+
+        // a full page with only settled expenses after it has no next page
+        Page<Expense> all = dao.findOpenExpensesForPerson(student1, null, 3);
+        assertThat(all.getItems()).containsExactlyElementsOf(open);
+        assertThat(all.hasNext()).isFalse();
+
+        // an expense saved once it is paid back in full leaves the open pages
+        Expense settled = open.remove(0);
+        settled.requestPayment(student2, amountOf(100), TODAY.plusDays(1)).pay(student2, TODAY);
+        dao.save(settled);
+        assertThat(dao.findOpenExpensesForPerson(student1, null, 3).getItems()).containsExactlyElementsOf(open);
+    }
+
+    private void checkPaymentRequestPages(ExpenseDAO dao) {
+        Expense lunch = new Expense(student1, "Lunch", amountOf(300), TODAY);
+        PaymentRequest later = lunch.requestPayment(student2, amountOf(100), TODAY.plusDays(7));
+        PaymentRequest sooner = lunch.requestPayment(student2, amountOf(100), TODAY.plusDays(1));
+        dao.save(lunch);
+
+        Page<PaymentRequest> received = dao.findPaymentRequestsReceived(student2, null, 1);
+        assertThat(received.getItems()).containsExactly(sooner);
+        assertThat(dao.findPaymentRequestsReceived(student2, received.getNextCursor(), 1).getItems()).containsExactly(later);
+
+        Page<PaymentRequest> sent = dao.findPaymentRequestsSent(student1, null, 5);
+        assertThat(sent.getItems()).containsExactly(sooner, later);
+        assertThat(sent.hasNext()).isFalse();
+    }
+}
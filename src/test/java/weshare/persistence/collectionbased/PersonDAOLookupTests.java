@@ -0,0 +1,63 @@
+package weshare.persistence.collectionbased;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import weshare.model.Person;
+import weshare.persistence.PersonDAO;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PersonDAOLookupTests {
+    private PersonDAO dao;
+
+    @BeforeEach
+    public void newRepository() {
+        this.dao = new PersonDAOImpl();
+    }
+
+    @Test
+    public void emailLookupIgnoresCaseAndSurroundingSpaces() {
+        Person p = dao.savePerson(new Person("student1@wethinkcode.co.za"));
+        assertThat(dao.findPersonByEmail(" Student1@WeThinkCode.co.za ")).contains(p);
+    }
+
+    @Test
+    public void savingTheSameEmailAgainReturnsTheFirstPerson() {
+        Person first = dao.savePerson(new Person("student1@wethinkcode.co.za"));
+        Person second = dao.savePerson(new Person("student1@wethinkcode.co.za"));
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    public void concurrentLoginsAgreeOnOnePerson() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Person>> logins = IntStream.range(0, 64)
+                    .mapToObj(i -> (Callable<Person>) () -> dao.savePerson(new Person("student1@wethinkcode.co.za")))
+                    .collect(Collectors.toList());
+            List<Person> saved = executor.invokeAll(logins).stream()
+                    .map(PersonDAOLookupTests::result)
+                    .collect(Collectors.toList());
+            Person stored = dao.findPersonByEmail("student1@wethinkcode.co.za").orElseThrow();
+            assertThat(saved).allSatisfy(p -> assertThat(p).isSameAs(stored));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Person result(Future<Person> future) {
+        try {
+            return future.get();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package weshare.persistence.collectionbased;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import weshare.model.Expense;
+import weshare.model.PaymentRequest;
+import weshare.model.Person;
+import weshare.persistence.ExpenseDAO;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static weshare.model.DateHelper.TODAY;
+import static weshare.model.DateHelper.TOMORROW;
+import static weshare.model.MoneyHelper.amountOf;
+
+public class ShardedExpenseDAOTests {
+    private final Person student1 = new Person("student1@wethinkcode.co.za");
+    private final Person student2 = new Person("student2@wethinkcode.co.za");
+    private final Person student3 = new Person("student3@wethinkcode.co.za");
+
+    private ExpenseDAO dao;
+
+    @BeforeEach
+    public void newRepository() {
+        this.dao = new ShardedExpenseDAO(4);
+    }
+
+    @Test
+    public void findExpensesForPerson() {
+        Expense lunch = dao.save(new Expense(student1, "Lunch", amountOf(300), TODAY));
+        Expense airtime = dao.save(new Expense(student1, "Airtime", amountOf(100), TODAY));
+        dao.save(new Expense(student2, "Movies", amountOf(150), TODAY));
+        assertThat(dao.findExpensesForPerson(student1)).containsExactlyInAnyOrder(lunch, airtime);
+        assertThat(dao.findExpensesForPerson(student3)).isEmpty();
+    }
+
+    @Test
+    public void getExpenseFromAnyShard() {
+        Expense lunch = dao.save(new Expense(student1, "Lunch", amountOf(300), TODAY));
+        Expense movies = dao.save(new Expense(student2, "Movies", amountOf(150), TODAY));
+        assertThat(dao.get(lunch.getId())).contains(lunch);
+        assertThat(dao.get(movies.getId())).contains(movies);
+    }
+
+    @Test
+    public void anExpenseThatChangesOwnerOnlyStaysInTheNewOwnersShard() {
+        UUID id = UUID.randomUUID();
+        Person previousOwner = null;
+        for (int i = 1; i <= 8; i++) {
+            Person owner = new Person("student" + i + "@wethinkcode.co.za");
+            Expense lunch = dao.save(new Expense(id, owner, "Lunch", amountOf(300), TODAY));
+
+            assertThat(dao.findExpensesForPerson(owner)).containsExactly(lunch);
+            if (previousOwner != null) assertThat(dao.findExpensesForPerson(previousOwner)).isEmpty();
+            assertThat(dao.get(id)).hasValueSatisfying(found -> assertThat(found.getPerson()).isEqualTo(owner));
+            assertThat(dao.countExpenses()).isEqualTo(1);
+            previousOwner = owner;
+        }
+    }
+
+    @Test
+    public void paymentRequestsSentAndReceived() {
+        Expense lunch = new Expense(student1, "Lunch", amountOf(300), TODAY);
+        PaymentRequest fromStudent2 = lunch.requestPayment(student2, amountOf(100), TOMORROW);
+        PaymentRequest fromStudent3 = lunch.requestPayment(student3, amountOf(100), TOMORROW);
+        dao.save(lunch);
+
+        assertThat(dao.findPaymentRequestsSent(student1)).containsExactlyInAnyOrder(fromStudent2, fromStudent3);
+        assertThat(dao.findPaymentRequestsReceived(student2)).containsExactly(fromStudent2);
+        assertThat(dao.findPaymentRequestsReceived(student3)).containsExactly(fromStudent3);
+        assertThat(dao.findPaymentRequestsReceived(student1)).isEmpty();
+    }
+
+    @Test
+    public void concurrentSavesByManyPeople() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Expense>> saves = IntStream.range(0, 400)
+                    .mapToObj(i -> (Callable<Expense>) () -> dao.save(new Expense(new Person("student" + (i % 20) + "@wethinkcode.co.za"), "Lunch", amountOf(10), TODAY)))
+                    .collect(Collectors.toList());
+            executor.invokeAll(saves);
+        } finally {
+            executor.shutdown();
+        }
+        int found = IntStream.range(0, 20)
+                .map(i -> dao.findExpensesForPerson(new Person("student" + i + "@wethinkcode.co.za")).size())
+                .sum();
+        assertThat(found).isEqualTo(400);
+    }
+}
@@ -0,0 +1,151 @@
+package weshare.persistence.filebased;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import weshare.model.Expense;
+import weshare.model.PaymentRequest;
+import weshare.model.Person;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static weshare.model.DateHelper.TODAY;
+import static weshare.model.DateHelper.TOMORROW;
+import static weshare.model.MoneyHelper.amountOf;
+
+public class FileBasedStoreTests {
+    private final Person student1 = new Person("student1@wethinkcode.co.za");
+    private final Person student2 = new Person("student2@wethinkcode.co.za");
+
+    @TempDir
+    Path dataDir;
+
+    @Test
+    public void peopleAndExpensesSurviveARestart() throws IOException {
+        Expense lunch = new Expense(student1, "Lunch", amountOf(300), TODAY);
+        PaymentRequest paymentRequest = lunch.requestPayment(student2, amountOf(100), TOMORROW);
+        try (FileBasedStore store = FileBasedStore.open(dataDir)) {
+            store.personDAO().savePerson(student1);
+            store.expenseDAO().save(lunch);
+        }
+        assertThat(dataDir.resolve("weshare.snapshot")).exists();
+
+        try (FileBasedStore store = FileBasedStore.open(dataDir)) {
+            assertThat(store.personDAO().findPersonByEmail("student1@wethinkcode.co.za")).contains(student1);
+            Expense restored = store.expenseDAO().get(lunch.getId()).orElseThrow();
+            assertThat(restored.getDescription()).isEqualTo("Lunch");
+            assertThat(restored.getAmount()).isEqualTo(amountOf(300));
+            assertThat(restored.getDate()).isEqualTo(TODAY);
+            assertThat(store.expenseDAO().findExpensesForPerson(student1)).containsExactly(lunch);
+            assertThat(store.expenseDAO().findPaymentRequestsReceived(student2)).containsExactly(paymentRequest);
+        }
+    }
+
+    @Test
+    public void journalIsReplayedAfterACrash() throws IOException {
+        Expense lunch = new Expense(student1, "Lunch", amountOf(300), TODAY);
+        PaymentRequest paymentRequest = lunch.requestPayment(student2, amountOf(100), TOMORROW);
+        FileBasedStore crashed = FileBasedStore.open(dataDir);
+        crashed.personDAO().savePerson(student2);
+        crashed.expenseDAO().save(lunch);
+        paymentRequest.pay(student2, TODAY.minusDays(1));
+        crashed.expenseDAO().save(lunch);
+
+        try (FileBasedStore store = FileBasedStore.open(dataDir)) {
+            assertThat(store.personDAO().findPersonByEmail("student2@wethinkcode.co.za")).contains(student2);
+            PaymentRequest restored = store.expenseDAO().findPaymentRequestsReceived(student2).iterator().next();
+            assertThat(restored.isPaid()).isTrue();
+            assertThat(restored.getPayment().orElseThrow().getPaymentDate()).isEqualTo(TODAY.minusDays(1));
+            assertThat(store.expenseDAO().get(lunch.getId()).orElseThrow().totalAmountForPaymentsReceived()).isEqualTo(amountOf(100));
+        }
+    }
+
+    @Test
+    public void journalWrittenAfterASnapshotIsReplayedOnTopOfIt() throws IOException {
+        Expense lunch = new Expense(student1, "Lunch", amountOf(300), TODAY);
+        Expense airtime = new Expense(student1, "Airtime", amountOf(100), TODAY);
+        FileBasedStore crashed = FileBasedStore.open(dataDir);
+        crashed.expenseDAO().save(lunch);
+        crashed.takeSnapshot().join();
+        crashed.expenseDAO().save(airtime);
+        assertThat(dataDir.resolve("weshare.journal.previous")).doesNotExist();
+
+        try (FileBasedStore store = FileBasedStore.open(dataDir)) {
+            assertThat(store.expenseDAO().findExpensesForPerson(student1)).containsExactlyInAnyOrder(lunch, airtime);
+        }
+    }
+
+    @Test
+    public void tornRecordAtTheEndOfTheJournalIsDiscarded() throws IOException {
+        Expense lunch = new Expense(student1, "Lunch", amountOf(300), TODAY);
+        Expense airtime = new Expense(student1, "Airtime", amountOf(100), TODAY);
+        FileBasedStore crashed = FileBasedStore.open(dataDir);
+        crashed.expenseDAO().save(lunch);
+        crashed.expenseDAO().save(airtime);
+        Path journal = dataDir.resolve("weshare.journal");
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(journal) - 3);
+        }
+
+        try (FileBasedStore store = FileBasedStore.open(dataDir)) {
+            assertThat(store.expenseDAO().findExpensesForPerson(student1)).containsExactly(lunch);
+        }
+    }
+
+    @Test
+    public void paymentDatesAreReplayedAsTheyWereWritten() throws IOException {
+        Expense lunch = new Expense(student1, "Lunch", amountOf(300), TODAY.minusDays(5));
+        PaymentRequest paymentRequest = lunch.requestPayment(student2, amountOf(100), TOMORROW);
+        paymentRequest.pay(student2, TODAY.minusDays(3));
+        ByteBuffer record = JournalRecords.encode(lunch);
+
+        Expense replayed = JournalRecords.decodeExpense(record);
+
+        PaymentRequest replayedRequest = replayed.listOfPaymentRequests().iterator().next();
+        assertThat(replayedRequest.getPayment().orElseThrow().getPaymentDate()).isEqualTo(TODAY.minusDays(3));
+    }
+
+    @Test
+    public void anUnknownPaymentStateIsRejected() {
+        Expense lunch = new Expense(student1, "Lunch", amountOf(300), TODAY);
+        lunch.requestPayment(student2, amountOf(100), TOMORROW);
+        ByteBuffer record = JournalRecords.encode(lunch);
+        // an unpaid request is written last and ends with its state
+        record.put(record.limit() - 1, (byte) 7);
+
+        assertThatThrownBy(() -> JournalRecords.decodeExpense(record))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Unknown payment request state");
+    }
+
+    @Test
+    public void everyAppendRacingAClosingJournalIsSettled() throws Exception {
+        Journal journal = Journal.open(dataDir.resolve("race.journal"), record -> {});
+        List<CompletableFuture<Void>> appended = new CopyOnWriteArrayList<>();
+        Thread appender = new Thread(() -> {
+            try {
+                while (true) appended.add(journal.append(ByteBuffer.wrap(new byte[]{1})));
+            } catch (IllegalStateException closed) {
+                // the journal has been closed
+            }
+        });
+        appender.start();
+        while (appended.size() < 100) Thread.onSpinWait();
+
+        journal.close();
+        appender.join();
+
+        assertThat(appended).allMatch(CompletableFuture::isDone);
+        assertThatThrownBy(() -> journal.append(ByteBuffer.wrap(new byte[]{1})))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
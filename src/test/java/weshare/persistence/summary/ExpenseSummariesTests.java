@@ -0,0 +1,75 @@
+package weshare.persistence.summary;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import weshare.model.Expense;
+import weshare.model.PaymentRequest;
+import weshare.model.Person;
+import weshare.persistence.ExpenseDAO;
+import weshare.persistence.collectionbased.ExpenseDAOImpl;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static weshare.model.DateHelper.TODAY;
+import static weshare.model.DateHelper.TOMORROW;
+import static weshare.model.MoneyHelper.amountOf;
+
+public class ExpenseSummariesTests {
+    private final Person student1 = Person.of("student1@wethinkcode.co.za");
+    private final Person student2 = Person.of("student2@wethinkcode.co.za");
+
+    private ExpenseSummaries summaries;
+    private ExpenseDAO dao;
+
+    @BeforeEach
+    public void newSummaries() {
+        summaries = new ExpenseSummaries();
+        dao = new SummarisingExpenseDAO(new ExpenseDAOImpl(), summaries, List.of());
+    }
+
+    @Test
+    public void nobodyStartsWithAnything() {
+        assertThat(summaries.summaryFor(student1)).isSameAs(PersonSummary.EMPTY);
+    }
+
+    @Test
+    public void savingExpensesAddsThemToTheOwnersSummary() {
+        dao.save(new Expense(student1, "Lunch", amountOf(300), TODAY));
+        dao.save(new Expense(student1, "Airtime", amountOf(100), TODAY));
+
+        PersonSummary summary = summaries.summaryFor(student1);
+        assertThat(summary.getOpenExpenses()).isEqualTo(2);
+        assertThat(summary.getOpenCents()).isEqualTo(40_000);
+        assertThat(summary.hasUnpaidRequests()).isFalse();
+        assertThat(summaries.summaryFor(student2)).isSameAs(PersonSummary.EMPTY);
+    }
+
+    @Test
+    public void savingAgainOnlyAppliesWhatChanged() {
+        Expense lunch = dao.save(new Expense(student1, "Lunch", amountOf(200), TODAY));
+        PaymentRequest paymentRequest = lunch.requestPayment(student2, amountOf(200), TOMORROW);
+        dao.save(lunch);
+        dao.save(lunch);
+
+        PersonSummary requested = summaries.summaryFor(student1);
+        assertThat(requested.getOpenExpenses()).isEqualTo(1);
+        assertThat(requested.getUnpaidRequests()).isEqualTo(1);
+        assertThat(requested.getRequestedCents()).isEqualTo(20_000);
+
+        paymentRequest.pay(student2, TODAY);
+        dao.save(lunch);
+        PersonSummary paid = summaries.summaryFor(student1);
+        assertThat(paid.getOpenExpenses()).isZero();
+        assertThat(paid.getOpenCents()).isZero();
+        assertThat(paid.getUnpaidRequests()).isZero();
+        assertThat(paid.getReceivedCents()).isEqualTo(20_000);
+    }
+
+    @Test
+    public void existingExpensesAreSummarisedUpFront() {
+        ExpenseSummaries loaded = new ExpenseSummaries();
+        new SummarisingExpenseDAO(new ExpenseDAOImpl(), loaded, List.of(new Expense(student1, "Lunch", amountOf(300), TODAY)));
+        assertThat(loaded.summaryFor(student1).getOpenCents()).isEqualTo(30_000);
+    }
+}
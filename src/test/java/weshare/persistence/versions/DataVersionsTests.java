@@ -0,0 +1,68 @@
+package weshare.persistence.versions;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import weshare.model.Expense;
+import weshare.model.Person;
+import weshare.persistence.ExpenseDAO;
+import weshare.persistence.collectionbased.ExpenseDAOImpl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static weshare.model.DateHelper.TODAY;
+import static weshare.model.DateHelper.TOMORROW;
+import static weshare.model.MoneyHelper.amountOf;
+
+public class DataVersionsTests {
+    private final Person student1 = Person.of("student1@wethinkcode.co.za");
+    private final Person student2 = Person.of("student2@wethinkcode.co.za");
+    private final Person student3 = Person.of("student3@wethinkcode.co.za");
+
+    private DataVersions versions;
+    private ExpenseDAO dao;
+
+    @BeforeEach
+    public void newVersions() {
+        versions = new DataVersions();
+        dao = new VersioningExpenseDAO(new ExpenseDAOImpl(), versions);
+    }
+
+    @Test
+    public void everythingStartsAtTheSameVersion() {
+        Expense expense = new Expense(student1, "Lunch", amountOf(300), TODAY);
+
+        assertThat(versions.forPerson(student1).getNumber()).isZero();
+        assertThat(versions.forExpense(expense.getId()).tag()).isEqualTo(versions.forPerson(student2).tag());
+    }
+
+    @Test
+    public void savingAnExpenseMovesOnTheExpenseAndItsOwner() {
+        Expense expense = dao.save(new Expense(student1, "Lunch", amountOf(300), TODAY));
+
+        assertThat(versions.forExpense(expense.getId()).getNumber()).isPositive();
+        assertThat(versions.forPerson(student1).tag()).isEqualTo(versions.forExpense(expense.getId()).tag());
+        assertThat(versions.forPerson(student2).getNumber()).isZero();
+    }
+
+    @Test
+    public void savingAnExpenseMovesOnEveryoneAskedToPay() {
+        Expense expense = dao.save(new Expense(student1, "Lunch", amountOf(300), TODAY));
+        DataVersions.Version before = versions.forPerson(student1);
+
+        expense.requestPayment(student2, amountOf(100), TOMORROW);
+        dao.save(expense);
+
+        assertThat(versions.forPerson(student1).getNumber()).isGreaterThan(before.getNumber());
+        assertThat(versions.forPerson(student2).tag()).isEqualTo(versions.forPerson(student1).tag());
+        assertThat(versions.forPerson(student3).getNumber()).isZero();
+    }
+
+    @Test
+    public void otherPeoplesSavesLeaveAVersionAlone() {
+        dao.save(new Expense(student1, "Lunch", amountOf(300), TODAY));
+        DataVersions.Version before = versions.forPerson(student1);
+
+        dao.save(new Expense(student3, "Airtime", amountOf(100), TODAY));
+
+        assertThat(versions.forPerson(student1)).isSameAs(before);
+    }
+}
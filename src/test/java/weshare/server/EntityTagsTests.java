@@ -0,0 +1,24 @@
+package weshare.server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EntityTagsTests {
+    private static final String ETAG = "\"1f0c9a2b-gz\"";
+
+    @Test
+    public void aTagMatchesItselfInAnyForm() {
+        assertThat(EntityTags.matches(ETAG, ETAG)).isTrue();
+        assertThat(EntityTags.matches("W/" + ETAG, ETAG)).isTrue();
+        assertThat(EntityTags.matches("\"other\", " + ETAG, ETAG)).isTrue();
+        assertThat(EntityTags.matches("*", ETAG)).isTrue();
+    }
+
+    @Test
+    public void otherTagsDoNotMatch() {
+        assertThat(EntityTags.matches("\"1f0c9a2b\"", ETAG)).isFalse();
+        assertThat(EntityTags.matches("\"other\", W/\"another\"", ETAG)).isFalse();
+        assertThat(EntityTags.matches(null, ETAG)).isFalse();
+    }
+}
@@ -0,0 +1,67 @@
+package weshare.server;
+
+import org.junit.jupiter.api.Test;
+import weshare.model.Person;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SignedCookieSessionsTests {
+    private static final String SECRET = "a secret shared by every node in the cluster";
+    private static final Instant NOW = Instant.parse("2024-03-01T10:00:00Z");
+
+    private final Person student1 = Person.of("student1@wethinkcode.co.za");
+    private final SignedCookieSessions sessions = new SignedCookieSessions(SECRET, Clock.fixed(NOW, ZoneOffset.UTC));
+
+    @Test
+    public void aSignedTokenNamesThePersonItWasSignedFor() {
+        String token = sessions.sign(student1);
+
+        assertThat(sessions.verify(token)).isSameAs(student1);
+    }
+
+    @Test
+    public void anotherNodeWithTheSameSecretAcceptsTheToken() {
+        String token = sessions.sign(student1);
+        SignedCookieSessions otherNode = new SignedCookieSessions(SECRET, Clock.fixed(NOW.plusSeconds(60), ZoneOffset.UTC));
+
+        assertThat(otherNode.verify(token)).isEqualTo(student1);
+    }
+
+    @Test
+    public void aTamperedTokenIsIgnored() {
+        String token = sessions.sign(student1);
+        String forged = sessions.sign(Person.of("student2@wethinkcode.co.za"));
+        String otherPerson = forged.substring(0, forged.indexOf('.')) + token.substring(token.indexOf('.'));
+
+        assertThat(sessions.verify(otherPerson)).isNull();
+        assertThat(sessions.verify(token.substring(0, token.length() - 2))).isNull();
+        assertThat(sessions.verify("not a token")).isNull();
+    }
+
+    @Test
+    public void aTokenSignedWithAnotherSecretIsIgnored() {
+        String token = new SignedCookieSessions("some other secret that is long enough").sign(student1);
+
+        assertThat(sessions.verify(token)).isNull();
+    }
+
+    @Test
+    public void anExpiredTokenIsIgnored() {
+        String token = sessions.sign(student1);
+        Instant later = NOW.plus(SignedCookieSessions.LIFETIME).plus(Duration.ofSeconds(1));
+
+        assertThat(new SignedCookieSessions(SECRET, Clock.fixed(later, ZoneOffset.UTC)).verify(token)).isNull();
+    }
+
+    @Test
+    public void theSecretMustBeLongEnough() {
+        assertThatThrownBy(() -> new SignedCookieSessions("too short"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
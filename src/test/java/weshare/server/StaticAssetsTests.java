@@ -0,0 +1,61 @@
+package weshare.server;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StaticAssetsTests {
+    @TempDir
+    Path dir;
+
+    @Test
+    public void assetsAreServedUnderTheirOwnAndAFingerprintedName() throws IOException {
+        StaticAssets assets = load("body { margin: 1em; }");
+
+        String fingerprinted = assets.fingerprinted("/css/main.css");
+
+        assertThat(fingerprinted).matches("/css/main\\.[0-9a-f]{16}\\.css");
+        assertThat(assets.paths()).contains("/css/main.css", fingerprinted, "/index.html", "/");
+    }
+
+    @Test
+    public void theFingerprintChangesWithTheContent() throws IOException {
+        String before = load("body { margin: 1em; }").fingerprinted("/css/main.css");
+        String after = load("body { margin: 2em; }").fingerprinted("/css/main.css");
+
+        assertThat(after).isNotEqualTo(before);
+    }
+
+    @Test
+    public void pagesAreNotFingerprinted() throws IOException {
+        StaticAssets assets = load("body { margin: 1em; }");
+
+        assertThat(assets.fingerprinted("/index.html")).isEqualTo("/index.html");
+        assertThat(assets.isPublic("/index.html")).isTrue();
+        assertThat(assets.isPublic("/expenses")).isFalse();
+    }
+
+    @Test
+    public void gzipIsOnlyUsedWhenTheBrowserAcceptsIt() {
+        assertThat(StaticAssets.acceptsGzip("gzip, deflate, br")).isTrue();
+        assertThat(StaticAssets.acceptsGzip("deflate;q=1.0, GZIP;q=0.5")).isTrue();
+        assertThat(StaticAssets.acceptsGzip("*")).isTrue();
+        assertThat(StaticAssets.acceptsGzip("gzip;q=0, deflate")).isFalse();
+        assertThat(StaticAssets.acceptsGzip("gzip; q=0.000")).isFalse();
+        assertThat(StaticAssets.acceptsGzip("*;q=1, gzip;q=0")).isFalse();
+        assertThat(StaticAssets.acceptsGzip("identity")).isFalse();
+        assertThat(StaticAssets.acceptsGzip(null)).isFalse();
+    }
+
+    private StaticAssets load(String css) throws IOException {
+        Files.createDirectories(dir.resolve("css"));
+        Files.writeString(dir.resolve("css/main.css"), css);
+        Files.writeString(dir.resolve("index.html"), "<link rel=\"stylesheet\" href=\"css/main.css\">");
+        return StaticAssets.load(dir);
+    }
+}
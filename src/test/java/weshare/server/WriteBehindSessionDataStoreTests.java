@@ -0,0 +1,107 @@
+package weshare.server;
+
+import org.eclipse.jetty.server.session.SessionContext;
+import org.eclipse.jetty.server.session.SessionData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import weshare.model.Person;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WriteBehindSessionDataStoreTests {
+    private static final long MEMORY = 1 << 20;
+
+    private final Person student1 = Person.of("student1@wethinkcode.co.za");
+
+    @TempDir
+    Path dir;
+
+    private WriteBehindSessionDataStore store;
+
+    @AfterEach
+    public void stopStore() throws Exception {
+        if (store != null && store.isStarted()) store.stop();
+    }
+
+    @Test
+    public void sessionsSurviveARestart() throws Exception {
+        store = started(MEMORY);
+        store.store("node0abc", session("node0abc", Long.MAX_VALUE));
+        store.stop();
+
+        store = started(MEMORY);
+        SessionData loaded = store.load("node0abc");
+
+        assertThat(loaded).isNotNull();
+        assertThat(loaded.getAttribute(WeShareServer.SESSION_USER_KEY)).isSameAs(student1);
+    }
+
+    @Test
+    public void savesAreWrittenInTheBackground() throws Exception {
+        store = started(MEMORY);
+        store.store("node0abc", session("node0abc", Long.MAX_VALUE));
+
+        assertThat(store.load("node0abc")).isNotNull();
+        store.flush();
+        assertThat(sessionFiles()).hasSize(1);
+    }
+
+    @Test
+    public void sessionsOutOfMemoryAreReadFromDisk() throws Exception {
+        store = started(0);
+        store.store("node0abc", session("node0abc", Long.MAX_VALUE));
+        store.flush();
+
+        assertThat(store.load("node0abc").getAttribute(WeShareServer.SESSION_USER_KEY)).isSameAs(student1);
+    }
+
+    @Test
+    public void deletedSessionsAreGone() throws Exception {
+        store = started(MEMORY);
+        store.store("node0abc", session("node0abc", Long.MAX_VALUE));
+        store.flush();
+
+        assertThat(store.delete("node0abc")).isTrue();
+        assertThat(store.load("node0abc")).isNull();
+        store.flush();
+        assertThat(sessionFiles()).isEmpty();
+    }
+
+    @Test
+    public void expiredSessionsAreFound() throws Exception {
+        store = started(MEMORY);
+        store.store("node0old", session("node0old", 1));
+        store.store("node0new", session("node0new", Long.MAX_VALUE));
+
+        assertThat(store.doGetExpired(Set.of("node0old", "node0new", "node0gone")))
+                .containsExactlyInAnyOrder("node0old", "node0gone");
+    }
+
+    private WriteBehindSessionDataStore started(long memory) throws Exception {
+        WriteBehindSessionDataStore started = new WriteBehindSessionDataStore(dir, memory);
+        started.initialize(new SessionContext("node0", null));
+        started.start();
+        return started;
+    }
+
+    private SessionData session(String id, long expiry) {
+        long now = System.currentTimeMillis();
+        SessionData data = new SessionData(id, "", "0.0.0.0", now, now, now, 60_000);
+        data.setExpiry(expiry);
+        data.setAttribute(WeShareServer.SESSION_USER_KEY, student1);
+        return data;
+    }
+
+    private Set<Path> sessionFiles() throws Exception {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).collect(Collectors.toSet());
+        }
+    }
+}
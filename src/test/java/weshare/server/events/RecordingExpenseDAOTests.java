@@ -0,0 +1,72 @@
+package weshare.server.events;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import weshare.model.Expense;
+import weshare.model.Person;
+import weshare.persistence.ExpenseDAO;
+import weshare.persistence.collectionbased.ExpenseDAOImpl;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static weshare.model.DateHelper.TODAY;
+import static weshare.model.MoneyHelper.amountOf;
+
+public class RecordingExpenseDAOTests {
+    private final Person student1 = new Person("student1@wethinkcode.co.za");
+
+    @Test
+    public void everyCallIsRecorded(@TempDir Path dir) throws Exception {
+        ExpenseDAO dao = new RecordingExpenseDAO(new ExpenseDAOImpl());
+
+        List<RecordedEvent> events = recording(dir, () -> {
+            dao.save(new Expense(student1, "Lunch", amountOf(300), TODAY));
+            dao.findExpensesForPerson(student1);
+            dao.get(UUID.randomUUID());
+        });
+
+        assertThat(events).extracting(event -> event.getString("operation"))
+                .containsExactly("save", "findExpensesForPerson", "get");
+        assertThat(events).extracting(event -> event.getLong("resultSize")).containsExactly(1L, 1L, 0L);
+        assertThat(events.get(1).getString("person")).isEqualTo(student1.getEmail());
+        assertThat(events.get(2).getString("person")).isNull();
+    }
+
+    @Test
+    public void nothingIsRecordedWhenTheEventIsDisabled(@TempDir Path dir) throws Exception {
+        ExpenseDAO dao = new RecordingExpenseDAO(new ExpenseDAOImpl());
+
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.disable(ExpenseDAOEvent.class);
+            recording.start();
+            dao.findExpensesForPerson(student1);
+            recording.stop();
+            recording.dump(dir.resolve("disabled.jfr"));
+            events = RecordingFile.readAllEvents(dir.resolve("disabled.jfr"));
+        }
+
+        assertThat(events).noneMatch(event -> event.getEventType().getName().equals("weshare.ExpenseDAO"));
+    }
+
+    private static List<RecordedEvent> recording(Path dir, Runnable calls) throws Exception {
+        Path file = dir.resolve("recording.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(ExpenseDAOEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+            calls.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals("weshare.ExpenseDAO"))
+                .toList();
+    }
+}
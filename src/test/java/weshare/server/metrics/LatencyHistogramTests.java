@@ -0,0 +1,47 @@
+package weshare.server.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class LatencyHistogramTests {
+    @Test
+    public void nothingRecordedReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertThat(histogram.count()).isZero();
+        assertThat(histogram.quantileNanos(0.99)).isZero();
+    }
+
+    @Test
+    public void quantilesAreWithinABucketOfTheTruth() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 1000; millis++) histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+
+        assertThat(histogram.count()).isEqualTo(1000);
+        assertThat((double) histogram.quantileNanos(0.5)).isCloseTo(500e6, within(500e6 * 0.125));
+        assertThat((double) histogram.quantileNanos(0.99)).isCloseTo(990e6, within(990e6 * 0.125));
+        assertThat(histogram.quantileNanos(0.999)).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(999));
+    }
+
+    @Test
+    public void everyValueFallsInABucketThatContainsIt() {
+        for (long micros = 0; micros < 1 << 20; micros += 7) {
+            int bucket = LatencyHistogram.bucketOf(micros);
+            assertThat(LatencyHistogram.upperEdgeOf(bucket)).isGreaterThan(micros);
+            if (bucket > 0) assertThat(LatencyHistogram.upperEdgeOf(bucket - 1)).isLessThanOrEqualTo(micros);
+        }
+    }
+
+    @Test
+    public void theSumIsExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_234_567);
+        histogram.record(7_654_321);
+
+        assertThat(histogram.sumNanos()).isEqualTo(8_888_888);
+    }
+}
@@ -0,0 +1,62 @@
+package weshare.server.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MetricsTests {
+    private final Metrics metrics = new Metrics();
+
+    @Test
+    public void requestsAreCountedByRoute() {
+        metrics.requestHandled("GET", "/expenses", 200, false, TimeUnit.MILLISECONDS.toNanos(3), 1000);
+        metrics.requestHandled("GET", "/expenses", 500, false, TimeUnit.MILLISECONDS.toNanos(5), 200);
+        metrics.requestHandled("GET", "/expenses", 200, true, TimeUnit.MILLISECONDS.toNanos(4), 300);
+
+        assertThat(metrics.export())
+                .contains("weshare_requests_total{method=\"GET\",route=\"/expenses\"} 3\n")
+                .contains("weshare_request_errors_total{method=\"GET\",route=\"/expenses\"} 2\n")
+                .contains("weshare_response_bytes_total{method=\"GET\",route=\"/expenses\"} 1500\n")
+                .contains("weshare_request_duration_seconds_count{method=\"GET\",route=\"/expenses\"} 3\n")
+                .contains("weshare_request_duration_seconds{method=\"GET\",route=\"/expenses\",quantile=\"0.99\"}");
+    }
+
+    @Test
+    public void daoTimeIsReportedByOperationAndByRoute() {
+        metrics.daoCalled("findExpensesForPersonPaged", TimeUnit.MILLISECONDS.toNanos(2));
+        metrics.daoCalled("findExpensesForPersonPaged", TimeUnit.MILLISECONDS.toNanos(4));
+        metrics.requestHandled("GET", "/expenses", 200, false, TimeUnit.MILLISECONDS.toNanos(10), 100);
+        metrics.requestPhase("GET", "/expenses", "dao", TimeUnit.MILLISECONDS.toNanos(6));
+        metrics.requestPhase("GET", "/expenses", "render", TimeUnit.MILLISECONDS.toNanos(3));
+
+        assertThat(metrics.export())
+                .contains("weshare_dao_duration_seconds_count{operation=\"findExpensesForPersonPaged\"} 2\n")
+                .contains("weshare_dao_duration_seconds_sum{operation=\"findExpensesForPersonPaged\"} 0.006\n")
+                .contains("weshare_request_phase_seconds_total{method=\"GET\",route=\"/expenses\",phase=\"dao\"} 0.006\n")
+                .contains("weshare_request_phase_seconds_total{method=\"GET\",route=\"/expenses\",phase=\"render\"} 0.003\n");
+    }
+
+    @Test
+    public void everyMetricIsDeclaredOnce() {
+        metrics.requestHandled("GET", "/expenses", 200, false, 1000, 10);
+        metrics.requestHandled("POST", "/expenses", 302, false, 1000, 0);
+        metrics.templateRendered("expenses.html", 1000);
+        metrics.exceptionPageShown(IllegalStateException.class);
+        metrics.gauge("weshare_expenses", "Expenses stored.", () -> 42);
+
+        String export = metrics.export();
+
+        assertThat(export.split("# TYPE weshare_requests_total counter", -1)).hasSize(2);
+        assertThat(export)
+                .contains("weshare_render_duration_seconds_count{template=\"expenses.html\"} 1\n")
+                .contains("weshare_exception_pages_total{exception=\"java.lang.IllegalStateException\"} 1\n")
+                .contains("# TYPE weshare_expenses gauge\nweshare_expenses 42\n");
+    }
+
+    @Test
+    public void labelValuesAreEscaped() {
+        assertThat(Metrics.escape("a \"quoted\" \\ path\n")).isEqualTo("a \\\"quoted\\\" \\\\ path\\n");
+    }
+}
@@ -0,0 +1,25 @@
+package weshare.server.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ScrapeAccessTests {
+    @Test
+    public void withATokenOnlyScrapersThatPresentItAreLetIn() {
+        ScrapeAccess access = new ScrapeAccess("a scrape token");
+
+        assertThat(access.allows("Bearer a scrape token", "10.0.0.7")).isTrue();
+        assertThat(access.allows("Bearer another token", "10.0.0.7")).isFalse();
+        assertThat(access.allows(null, "127.0.0.1")).isFalse();
+    }
+
+    @Test
+    public void withoutATokenOnlyTheSameMachineIsLetIn() {
+        ScrapeAccess access = new ScrapeAccess(null);
+
+        assertThat(access.allows(null, "127.0.0.1")).isTrue();
+        assertThat(access.allows(null, "0:0:0:0:0:0:0:1")).isTrue();
+        assertThat(access.allows("Bearer anything", "10.0.0.7")).isFalse();
+    }
+}
@@ -0,0 +1,75 @@
+package weshare.server.timing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RequestTimerTests {
+    @AfterEach
+    public void endRequest() {
+        RequestTimer.end();
+    }
+
+    @Test
+    public void phasesOutsideARequestAreIgnored() {
+        try (RequestTimer.Split ignored = RequestTimer.phase("dao")) {
+            spin();
+        }
+
+        assertThat(RequestTimer.end()).isNull();
+    }
+
+    @Test
+    public void phasesAreCountedEveryTimeTheyAreEntered() {
+        RequestTimer timer = RequestTimer.begin();
+        for (int i = 0; i < 3; i++) {
+            try (RequestTimer.Split ignored = RequestTimer.phase("dao")) {
+                spin();
+            }
+        }
+
+        assertThat(timer.phases()).singleElement().satisfies(phase -> {
+            assertThat(phase.getName()).isEqualTo("dao");
+            assertThat(phase.getCount()).isEqualTo(3);
+            assertThat(phase.getNanos()).isPositive();
+        });
+    }
+
+    @Test
+    public void nestedPhasesAreNotChargedToTheOuterPhase() {
+        RequestTimer timer = RequestTimer.begin();
+        long inner;
+        long start = System.nanoTime();
+        try (RequestTimer.Split ignored = RequestTimer.phase("render")) {
+            long innerStart = System.nanoTime();
+            try (RequestTimer.Split alsoIgnored = RequestTimer.phase("dao")) {
+                spin();
+            }
+            inner = System.nanoTime() - innerStart;
+        }
+        long total = System.nanoTime() - start;
+
+        long render = timer.phases().stream().filter(p -> p.getName().equals("render")).findFirst().orElseThrow().getNanos();
+        long dao = timer.phases().stream().filter(p -> p.getName().equals("dao")).findFirst().orElseThrow().getNanos();
+        assertThat(dao).isLessThanOrEqualTo(inner);
+        assertThat(render + dao).isLessThanOrEqualTo(total);
+    }
+
+    @Test
+    public void serverTimingListsEveryPhaseThenTheRestAndTheTotal() {
+        RequestTimer timer = RequestTimer.begin();
+        try (RequestTimer.Split ignored = RequestTimer.phase("dao")) {
+            spin();
+        }
+
+        String header = RequestTiming.serverTiming(timer, timer.elapsedNanos());
+
+        assertThat(header).matches("dao;dur=[0-9.]+;desc=\"1 call\", app;dur=[0-9.]+, total;dur=[0-9.]+");
+    }
+
+    private static void spin() {
+        long until = System.nanoTime() + 1_000_000;
+        while (System.nanoTime() < until) Thread.onSpinWait();
+    }
+}